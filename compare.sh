@@ -0,0 +1,4 @@
+#!/bin/sh
+
+# Runs the tests and a benchmark against the mask.sh in each given directory, and ranks them.
+java -cp tools/target/luhnybin-1.0-SNAPSHOT.jar com.squareup.luhnybin.Compare "$@"
@@ -0,0 +1,73 @@
+package mahergamal.cryptography.impl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Validates every window of a digit dense run, the worst case for the filter : the original string based
+ * {@link LuhnChecksum}, the scalar {@link LuhnDigitChecksum} one window at a time, and the {@link SwarLuhnChecksum}
+ * batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LuhnChecksumBenchmark {
+    
+    @Param({ "14", "16" })
+    public int length;
+    
+    private static final int RUN_LENGTH = 1024;
+    
+    private byte[] digits = new byte[RUN_LENGTH];
+    private String text;
+    private boolean[] valid = new boolean[RUN_LENGTH];
+    private LuhnDigitChecksum scalar = new LuhnDigitChecksum();
+    private SwarLuhnChecksum swar = new SwarLuhnChecksum();
+    
+    @Setup
+    public void generateDigits() {
+        Random random = new Random(0);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < RUN_LENGTH; i++) {
+            digits[i] = (byte) random.nextInt(10);
+            builder.append(digits[i]);
+        }
+        text = builder.toString();
+    }
+    
+    @Benchmark
+    public int stringChecksum() {
+        int passed = 0;
+        for (int i = 0; i + length <= RUN_LENGTH; i++) {
+            if (new LuhnChecksum(text.substring(i, i + length)).isValid()) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+    
+    @Benchmark
+    public int scalarDigitChecksum() {
+        int passed = 0;
+        for (int i = 0; i + length <= RUN_LENGTH; i++) {
+            if (scalar.isValid(digits, i, length)) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+    
+    @Benchmark
+    public int swarBatchChecksum() {
+        return swar.validateWindows(digits, 0, RUN_LENGTH - length + 1, length, valid);
+    }
+}
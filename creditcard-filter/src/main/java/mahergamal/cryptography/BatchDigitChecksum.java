@@ -0,0 +1,17 @@
+package mahergamal.cryptography;
+
+/**
+ * A {@link DigitChecksum} that can validate a whole series of overlapping windows in one call, which is what a long
+ * run of digits amounts to : one candidate starting at every position.
+ */
+public interface BatchDigitChecksum extends DigitChecksum {
+    
+    /**
+     * Validates the <code>count</code> windows of <code>length</code> digits starting at <code>offset</code>,
+     * <code>offset + 1</code> and so on, <code>valid[i]</code> telling whether the window starting at
+     * <code>offset + i</code> passed.
+     * 
+     * @return the number of windows that passed
+     */
+    public int validateWindows(byte[] digits, int offset, int count, int length, boolean[] valid);
+}
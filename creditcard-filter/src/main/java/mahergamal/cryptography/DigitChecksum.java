@@ -0,0 +1,10 @@
+package mahergamal.cryptography;
+
+/**
+ * A checksum over digits that were already decoded to their values (0 to 9), for scanners that validate far too many
+ * candidates to afford a string and a {@link Checksum} instance for each of them. Implementations are stateless.
+ */
+public interface DigitChecksum {
+    
+    public boolean isValid(byte[] digits, int offset, int length);
+}
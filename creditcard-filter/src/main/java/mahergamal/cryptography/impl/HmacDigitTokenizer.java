@@ -0,0 +1,120 @@
+package mahergamal.cryptography.impl;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Derives a format preserving token from a sequence of digits : every digit is replaced by a digit taken from the
+ * HMAC-SHA256 of the whole sequence, so the same card always gives the same token under the same key. No 14, 15 or 16
+ * digits in a row of a token are allowed to pass the Luhn check, otherwise they would look like a real card to whoever
+ * scans the logs next. Safe to share between threads.
+ */
+public class HmacDigitTokenizer {
+    
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_CARD_DIGITS = 14;
+    private static final int MAX_CARD_DIGITS = 16;
+    
+    private final SecretKeySpec key;
+    private final TokenDictionary dictionary;
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+    
+    /**
+     * @param dictionary caches the tokens of the cards seen so far, may be <code>null</code>
+     */
+    public HmacDigitTokenizer(byte[] key, TokenDictionary dictionary) {
+        this.key = new SecretKeySpec(key, ALGORITHM);
+        this.dictionary = dictionary;
+    }
+    
+    /**
+     * Replaces the first <code>length</code> ASCII digits of the array with their token.
+     */
+    public void tokenize(char[] digits, int length) {
+        boolean cacheable = dictionary != null && length <= TokenDictionary.MAX_DIGITS;
+        long packedDigits = 0;
+        if (cacheable) {
+            packedDigits = TokenDictionary.pack(digits, length);
+            long packedToken = dictionary.get(packedDigits);
+            if (packedToken != 0) {
+                TokenDictionary.unpack(packedToken, digits);
+                return;
+            }
+        }
+        computeToken(digits, length);
+        if (cacheable) {
+            dictionary.put(packedDigits, TokenDictionary.pack(digits, length));
+        }
+    }
+    
+    private void computeToken(char[] digits, int length) {
+        Scratch s = scratch.get();
+        if (s.input.length < length + 1) {
+            s.input = new byte[length + 1];
+        }
+        for (int i = 0; i < length; i++) {
+            s.input[i + 1] = (byte) digits[i];
+        }
+        int produced = 0;
+        for (byte counter = 0; produced < length; counter++) {
+            s.input[0] = counter;
+            s.mac.update(s.input, 0, length + 1);
+            byte[] hash = s.mac.doFinal();
+            for (int i = 0; i < hash.length && produced < length; i++) {
+                int b = hash[i] & 0xFF;
+                if (b < 250) {
+                    digits[produced++] = (char) ('0' + b % 10);
+                }
+            }
+        }
+        for (int last = MIN_CARD_DIGITS - 1; last < length; last++) {
+            while (endsValidCard(digits, last)) {
+                digits[last] = (char) ('0' + (digits[last] - '0' + 1) % 10);
+            }
+        }
+    }
+    
+    /**
+     * The digit at <code>last</code> is the check digit of every window ending on it, so each of the three windows
+     * rules out a single value of it and bumping it always gets past them in a few steps.
+     */
+    private static boolean endsValidCard(char[] digits, int last) {
+        for (int length = MIN_CARD_DIGITS; length <= MAX_CARD_DIGITS && length <= last + 1; length++) {
+            if (passesLuhnCheck(digits, last + 1 - length, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean passesLuhnCheck(char[] digits, int offset, int length) {
+        int sum = 0;
+        for (int i = offset + length - 1, doubled = 0; i >= offset; i--, doubled ^= 1) {
+            int value = (digits[i] - '0') << doubled;
+            sum += value > 9 ? value - 9 : value;
+        }
+        return sum % 10 == 0;
+    }
+    
+    private class Scratch {
+        
+        private final Mac mac;
+        private byte[] input = new byte[17];
+        
+        Scratch() {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package mahergamal.cryptography.impl;
+
+import mahergamal.cryptography.DigitChecksum;
+
+/**
+ * The same algorithm as {@link LuhnChecksum}, over decoded digits and without any allocation.
+ */
+public class LuhnDigitChecksum implements DigitChecksum {
+    
+    private static final int[] DOUBLED_DIGIT_SUMS = { 0, 2, 4, 6, 8, 1, 3, 5, 7, 9 };
+    
+    @Override
+    public boolean isValid(byte[] digits, int offset, int length) {
+        int sum = 0;
+        int i = offset + length - 1;
+        for (; i > offset; i -= 2) {
+            sum += digits[i] + DOUBLED_DIGIT_SUMS[digits[i - 1]];
+        }
+        if (i == offset) {
+            sum += digits[i];
+        }
+        return sum % 10 == 0;
+    }
+}
@@ -0,0 +1,127 @@
+package mahergamal.cryptography.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import mahergamal.cryptography.BatchDigitChecksum;
+
+/**
+ * The Luhn algorithm computed 8 digits at a time, each digit in its own byte lane of a <code>long</code> (SIMD within
+ * a register). A digit <code>d</code> doubles to <code>2d</code>, minus 9 when <code>d >= 5</code>. That condition is
+ * the fourth bit of <code>d + 3</code>, so all 8 lanes get doubled with a handful of shifts and masks, every other lane
+ * is kept depending on the parity of the window length, and one multiplication sums the lanes up. Thread-safe, the
+ * batch scratch space is kept per thread.
+ */
+public class SwarLuhnChecksum implements BatchDigitChecksum {
+    
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    
+    private static final long EACH_LANE = 0x0101010101010101L;
+    private static final long THREE_IN_EACH_LANE = 0x0303030303030303L;
+    private static final long FOURTH_BIT_OF_EACH_LANE = 0x0808080808080808L;
+    private static final long EVEN_LANES = 0x00FF00FF00FF00FFL;
+    private static final long ODD_LANES = ~EVEN_LANES;
+    
+    /** Masks keeping the lowest <code>n</code> lanes, for the last partial chunk of a window. */
+    private static final long[] LOWEST_LANES = new long[9];
+    
+    static {
+        for (int lanes = 0; lanes < 8; lanes++) {
+            LOWEST_LANES[lanes] = (1L << (8 * lanes)) - 1;
+        }
+        LOWEST_LANES[8] = -1L;
+    }
+    
+    private final ThreadLocal<Sums> scratch = new ThreadLocal<Sums>() {
+        @Override
+        protected Sums initialValue() {
+            return new Sums();
+        }
+    };
+    
+    @Override
+    public boolean isValid(byte[] digits, int offset, int length) {
+        return sum(digits, offset, length) % 10 == 0;
+    }
+    
+    /**
+     * Every digit of the run is doubled once, 8 at a time, into two running sums : one where the digits at even
+     * positions of the run are the doubled ones, one where the odd ones are. A window then only takes a subtraction
+     * from the right sums, whatever its length.
+     */
+    @Override
+    public int validateWindows(byte[] digits, int offset, int count, int length, boolean[] valid) {
+        int run = count + length - 1;
+        Sums sums = scratch.get().ensureCapacity(run + 1);
+        int[] evenDoubled = sums.evenDoubled;
+        int[] oddDoubled = sums.oddDoubled;
+        for (int i = 0; i < run; i += 8) {
+            int lanes = Math.min(8, run - i);
+            long packed = load(digits, offset + i, lanes);
+            long doubled = doubleLanes(packed);
+            long evenMixed = (packed & ODD_LANES) | (doubled & EVEN_LANES);
+            long oddMixed = (packed & EVEN_LANES) | (doubled & ODD_LANES);
+            for (int lane = 0; lane < lanes; lane++) {
+                evenDoubled[i + lane + 1] = evenDoubled[i + lane] + (int) ((evenMixed >>> (8 * lane)) & 0xFF);
+                oddDoubled[i + lane + 1] = oddDoubled[i + lane] + (int) ((oddMixed >>> (8 * lane)) & 0xFF);
+            }
+        }
+        
+        int passed = 0;
+        for (int start = 0; start < count; start++) {
+            int[] windowSums = ((start + length) & 1) == 0 ? evenDoubled : oddDoubled;
+            valid[start] = (windowSums[start + length] - windowSums[start]) % 10 == 0;
+            if (valid[start]) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+    
+    /**
+     * The rightmost digit is never doubled, so with little endian lanes the doubled ones are the even lanes for an
+     * even length and the odd lanes otherwise. Chunks are 8 lanes wide, which keeps that parity the same in all of
+     * them.
+     */
+    private static int sum(byte[] digits, int offset, int length) {
+        long doubledLanes = (length & 1) == 0 ? EVEN_LANES : ODD_LANES;
+        int sum = 0;
+        for (int i = 0; i < length; i += 8) {
+            long packed = load(digits, offset + i, Math.min(8, length - i));
+            long mixed = (packed & ~doubledLanes) | (doubleLanes(packed) & doubledLanes);
+            sum += (int) ((mixed * EACH_LANE) >>> 56);
+        }
+        return sum;
+    }
+    
+    private static long doubleLanes(long packed) {
+        long atLeastFive = ((packed + THREE_IN_EACH_LANE) & FOURTH_BIT_OF_EACH_LANE) >>> 3;
+        return (packed << 1) - atLeastFive * 9;
+    }
+    
+    private static long load(byte[] digits, int offset, int lanes) {
+        if (offset + 8 <= digits.length) {
+            return (long) LONGS.get(digits, offset) & LOWEST_LANES[lanes];
+        }
+        long packed = 0;
+        for (int lane = lanes - 1; lane >= 0; lane--) {
+            packed = (packed << 8) | digits[offset + lane];
+        }
+        return packed;
+    }
+    
+    private static class Sums {
+        
+        private int[] evenDoubled = new int[0];
+        private int[] oddDoubled = new int[0];
+        
+        Sums ensureCapacity(int capacity) {
+            if (evenDoubled.length < capacity) {
+                evenDoubled = new int[capacity];
+                oddDoubled = new int[capacity];
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package mahergamal.cryptography.impl;
+
+/**
+ * A bounded cache of digit sequence to token mappings, both packed into primitive <code>long</code>s. The table is
+ * split into independently locked stripes of open addressing slots, so threads working on different cards rarely
+ * meet on the same lock. Once the probe window of a key is full, the entry at its home slot gets overwritten, which
+ * keeps the memory fixed no matter how many distinct cards go through.
+ */
+public class TokenDictionary {
+    
+    static final int MAX_DIGITS = 17;
+    
+    private static final int STRIPES = 64;
+    private static final int MAX_PROBES = 8;
+    private static final long ABSENT = 0;
+    
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int slotMask;
+    
+    public TokenDictionary(int capacity) {
+        int slotsPerStripe = Integer.highestOneBit(Math.max(MAX_PROBES, capacity / STRIPES - 1) << 1);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(slotsPerStripe);
+        }
+        this.slotMask = slotsPerStripe - 1;
+    }
+    
+    /**
+     * Packs at most {@link #MAX_DIGITS} ASCII digits along with their count, so leading zeros are kept apart.
+     */
+    static long pack(char[] digits, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value * 10 + (digits[i] - '0');
+        }
+        return ((long) length << 57) | value;
+    }
+    
+    static void unpack(long packed, char[] digits) {
+        int length = (int) (packed >>> 57);
+        long value = packed & ((1L << 57) - 1);
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+    
+    /**
+     * @return the packed token, or 0 if the key isn't in the dictionary
+     */
+    long get(long key) {
+        int hash = spread(key);
+        Stripe stripe = stripes[hash & (STRIPES - 1)];
+        int home = (hash >>> 6) & slotMask;
+        synchronized (stripe) {
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (home + probe) & slotMask;
+                if (stripe.keys[slot] == key) {
+                    return stripe.values[slot];
+                }
+                if (stripe.keys[slot] == ABSENT) {
+                    break;
+                }
+            }
+        }
+        return ABSENT;
+    }
+    
+    void put(long key, long value) {
+        int hash = spread(key);
+        Stripe stripe = stripes[hash & (STRIPES - 1)];
+        int home = (hash >>> 6) & slotMask;
+        synchronized (stripe) {
+            int target = home;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (home + probe) & slotMask;
+                if (stripe.keys[slot] == key || stripe.keys[slot] == ABSENT) {
+                    target = slot;
+                    break;
+                }
+            }
+            stripe.keys[target] = key;
+            stripe.values[target] = value;
+        }
+    }
+    
+    private static int spread(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    private static class Stripe {
+        
+        private final long[] keys;
+        private final long[] values;
+        
+        Stripe(int slots) {
+            this.keys = new long[slots];
+            this.values = new long[slots];
+        }
+    }
+}
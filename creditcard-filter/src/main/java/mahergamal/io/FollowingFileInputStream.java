@@ -0,0 +1,159 @@
+package mahergamal.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An endless stream over a growing file, like <code>tail -F</code>. Only the newly appended bytes are read, using
+ * positional reads from the last offset, and the reader blocks on a {@link WatchService} while there is nothing new.
+ * Truncation restarts from the beginning of the file, rotation switches to the new file once the old one is drained.
+ * Incomplete lines are left to the reader on top of this stream, which simply keeps them until the rest arrives.
+ */
+public class FollowingFileInputStream extends InputStream {
+    
+    private static final long RECHECK_INTERVAL_MILLIS = 1000;
+    
+    private static Logger log = LoggerFactory.getLogger(FollowingFileInputStream.class);
+    
+    private final Path file;
+    private final WatchService watcher;
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+    private byte[] lastArray;
+    private ByteBuffer lastBuffer;
+    private volatile boolean closed;
+    
+    public FollowingFileInputStream(Path file, boolean fromBeginning) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.watcher = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        if (openFile() && !fromBeginning) {
+            position = channel.size();
+        }
+    }
+    
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuffer target = wrap(b, off, len);
+        while (!closed) {
+            if (channel != null || openFile()) {
+                if (channel.size() < position) {
+                    log.info("{} was truncated, following it from the beginning", file);
+                    position = 0;
+                }
+                int read = channel.read(target, position);
+                if (read > 0) {
+                    position += read;
+                    return read;
+                }
+                if (wasRotated()) {
+                    log.info("{} was rotated, following the new file", file);
+                    channel.close();
+                    channel = null;
+                    position = 0;
+                    continue;
+                }
+            }
+            awaitChange();
+        }
+        return -1;
+    }
+    
+    @Override
+    public int available() throws IOException {
+        if (closed || channel == null) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, channel.size() - position));
+    }
+    
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watcher.close();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+    
+    /**
+     * The reader on top of us passes the same array over and over, so the buffer wrapping it is kept around.
+     */
+    private ByteBuffer wrap(byte[] b, int off, int len) {
+        if (b != lastArray) {
+            lastArray = b;
+            lastBuffer = ByteBuffer.wrap(b);
+        }
+        lastBuffer.limit(off + len).position(off);
+        return lastBuffer;
+    }
+    
+    private boolean openFile() throws IOException {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+            log.debug("Opened {} (key = {})", file, fileKey);
+            return true;
+        } catch (NoSuchFileException e) {
+            log.debug("Waiting for {} to be created", file);
+            return false;
+        }
+    }
+    
+    private boolean wasRotated() throws IOException {
+        if (fileKey == null) {
+            return false;
+        }
+        try {
+            return !fileKey.equals(Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Blocks until something happens in the directory of the file. The periodic recheck covers file systems that
+     * deliver events late or not at all.
+     */
+    private void awaitChange() throws IOException {
+        try {
+            WatchKey key = watcher.poll(RECHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException e) {
+            closed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while following " + file);
+        }
+    }
+}
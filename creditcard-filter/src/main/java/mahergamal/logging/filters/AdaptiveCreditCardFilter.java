@@ -0,0 +1,421 @@
+package mahergamal.logging.filters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import mahergamal.logging.filters.jfr.ModeSwitchEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Filters a stream with a {@link MaskingEngine}, starting single-threaded and going pipelined or parallel when the
+ * {@link ExecutionModeSelector} finds the input calls for it. The input is cut into chunks at line breaks, which no
+ * card can span, so every chunk can be masked on its own by any thread and the output is the same in every mode. The
+ * mode only changes between two chunks, and chunks are always written in the order they were read.
+ * <p>
+ * A line is held back until its line break comes in, however long it is. The output is flushed whenever the filter
+ * catches up with its input.
+ */
+public class AdaptiveCreditCardFilter implements Runnable, AdaptiveCreditCardFilterMXBean {
+    
+    public static final String OBJECT_NAME = "mahergamal.logging.filters:type=AdaptiveCreditCardFilter";
+    
+    private static final int CHUNK_SIZE = 65536;
+    
+    private static Logger log = LoggerFactory.getLogger(AdaptiveCreditCardFilter.class);
+    
+    private final Chunk end = new Chunk(null, 0);
+    
+    private InputStream inputStream;
+    private OutputStream outputStream;
+    private MaskingEngine engine;
+    private ExecutionModeSelector selector;
+    
+    private BlockingQueue<FutureTask<Chunk>> written;
+    private ExecutorService writer;
+    private ExecutorService workers;
+    private volatile Throwable writerFailure;
+    
+    private volatile ExecutionMode mode = ExecutionMode.SEQUENTIAL;
+    private volatile long modeSwitches;
+    private volatile String lastSwitchReason = "started";
+    private volatile double inputBytesPerSecond;
+    private volatile double averageLineLength;
+    private volatile double candidateDensity;
+    private volatile long bytesRead;
+    
+    private long windowStart;
+    private long windowBytes;
+    private long windowLines;
+    private long windowDigits;
+    private long windowStalledNanos;
+    private boolean windowBacklogged;
+    
+    public AdaptiveCreditCardFilter(InputStream inputStream, OutputStream outputStream, MaskingEngine engine,
+            ExecutionModeSelector selector) {
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.engine = engine;
+        this.selector = selector;
+        this.written = new ArrayBlockingQueue<FutureTask<Chunk>>(2 * selector.getParallelism() + 2);
+    }
+    
+    @Override
+    public void run() {
+        ObjectName name = register();
+        try {
+            long startTimestamp = System.currentTimeMillis();
+            windowStart = System.nanoTime();
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int length = 0;
+            int read;
+            while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+                int lastBreak = observe(buffer, length, read);
+                length += read;
+                windowBacklogged |= inputStream.available() > 0;
+                if (lastBreak >= 0) {
+                    int rest = length - lastBreak - 1;
+                    byte[] next = new byte[Math.max(CHUNK_SIZE, 2 * rest)];
+                    System.arraycopy(buffer, lastBreak + 1, next, 0, rest);
+                    dispatch(buffer, lastBreak + 1);
+                    buffer = next;
+                    length = rest;
+                    adapt();
+                } else if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                }
+            }
+            if (length > 0) {
+                dispatch(buffer, length);
+            }
+            awaitWriter(end);
+            log.info("Adaptive credit card filter took : {} ms, {} mode switches", System.currentTimeMillis()
+                    - startTimestamp, modeSwitches);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        } finally {
+            shutdown();
+            unregister(name);
+            closeStreams();
+        }
+    }
+    
+    @Override
+    public String getMode() {
+        return mode.name();
+    }
+    
+    @Override
+    public long getModeSwitches() {
+        return modeSwitches;
+    }
+    
+    @Override
+    public String getLastSwitchReason() {
+        return lastSwitchReason;
+    }
+    
+    @Override
+    public double getInputBytesPerSecond() {
+        return inputBytesPerSecond;
+    }
+    
+    @Override
+    public double getAverageLineLength() {
+        return averageLineLength;
+    }
+    
+    @Override
+    public double getCandidateDensity() {
+        return candidateDensity;
+    }
+    
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+    
+    /**
+     * Counts the lines and digits of the bytes just read.
+     *
+     * @return the index of the last line break among them, or -1
+     */
+    private int observe(byte[] buffer, int offset, int length) {
+        int lastBreak = -1;
+        long digits = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = buffer[i];
+            if (b == '\n') {
+                windowLines++;
+                lastBreak = i;
+            } else if (b >= '0' && b <= '9') {
+                digits++;
+            }
+        }
+        windowDigits += digits;
+        windowBytes += length;
+        bytesRead += length;
+        return lastBreak;
+    }
+    
+    private void adapt() throws IOException {
+        long now = System.nanoTime();
+        long elapsed = now - windowStart;
+        if (elapsed < selector.getWindowMillis() * 1000000) {
+            return;
+        }
+        // Waiting for our own writing thread says nothing of how fast the input comes.
+        inputBytesPerSecond = windowBytes * 1e9 / Math.max(1, elapsed - windowStalledNanos);
+        averageLineLength = windowLines == 0 ? windowBytes : (double) windowBytes / windowLines;
+        candidateDensity = windowBytes == 0 ? 0 : (double) windowDigits / windowBytes;
+        windowStart = now;
+        windowBytes = 0;
+        windowLines = 0;
+        windowDigits = 0;
+        boolean backlogged = windowBacklogged;
+        windowStalledNanos = 0;
+        windowBacklogged = false;
+        
+        ExecutionMode next = selector.select(mode, inputBytesPerSecond, averageLineLength, candidateDensity,
+                backlogged);
+        if (next != mode) {
+            switchTo(next, selector.getReason());
+        }
+    }
+    
+    private void switchTo(ExecutionMode next, String reason) throws IOException {
+        log.info("Switching from {} to {} mode : {}", new Object[] { mode, next, reason });
+        ModeSwitchEvent event = new ModeSwitchEvent();
+        if (event.shouldCommit()) {
+            event.from = mode.name();
+            event.to = next.name();
+            event.reason = reason;
+            event.bytesPerSecond = inputBytesPerSecond;
+            event.commit();
+        }
+        if (next == ExecutionMode.SEQUENTIAL) {
+            // The reading thread writes again, after whatever the writing thread still has.
+            awaitWriter(null);
+        }
+        mode = next;
+        modeSwitches++;
+        lastSwitchReason = reason;
+    }
+    
+    private void dispatch(byte[] bytes, int length) throws IOException {
+        if (mode == ExecutionMode.SEQUENTIAL) {
+            engine.mask(bytes, 0, length, bytes);
+            outputStream.write(bytes, 0, length);
+            if (inputStream.available() == 0) {
+                outputStream.flush();
+            }
+            return;
+        }
+        FutureTask<Chunk> task = new FutureTask<Chunk>(new MaskChunk(bytes, length));
+        if (mode == ExecutionMode.PARALLEL) {
+            workers().execute(task);
+        }
+        enqueue(task);
+    }
+    
+    /**
+     * Waits until the writing thread wrote and flushed everything it was given, and leaves it waiting for more unless
+     * <code>marker</code> is {@link #end}.
+     */
+    private void awaitWriter(Chunk marker) throws IOException {
+        if (writer == null) {
+            outputStream.flush();
+            return;
+        }
+        final Chunk result = marker == null ? new Chunk(null, 0) : marker;
+        FutureTask<Chunk> barrier = new FutureTask<Chunk>(new Callable<Chunk>() {
+            public Chunk call() throws IOException {
+                outputStream.flush();
+                return result;
+            }
+        });
+        enqueue(barrier);
+        try {
+            barrier.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        checkWriter();
+    }
+    
+    private void enqueue(FutureTask<Chunk> task) throws IOException {
+        checkWriter();
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(daemonThreads("filter-writer"));
+            writer.execute(new Runnable() {
+                public void run() {
+                    writeChunks();
+                }
+            });
+        }
+        try {
+            if (!written.offer(task)) {
+                long stallStart = System.nanoTime();
+                written.put(task);
+                windowStalledNanos += System.nanoTime() - stallStart;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+    
+    /**
+     * Runs on the writing thread. Runs each chunk's task unless a worker already did, so in pipelined mode the
+     * masking happens here, and writes the chunks in order. Keeps draining the queue after a failure so the reading
+     * thread never blocks on it.
+     */
+    private void writeChunks() {
+        while (true) {
+            FutureTask<Chunk> task;
+            try {
+                task = written.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            task.run();
+            Chunk chunk;
+            try {
+                chunk = task.get();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                writerFailure = e.getCause();
+                continue;
+            }
+            if (chunk == end) {
+                return;
+            }
+            if (chunk.bytes == null || writerFailure != null) {
+                continue;
+            }
+            try {
+                outputStream.write(chunk.bytes, 0, chunk.length);
+                if (written.isEmpty()) {
+                    outputStream.flush();
+                }
+            } catch (IOException e) {
+                writerFailure = e;
+            }
+        }
+    }
+    
+    private void checkWriter() throws IOException {
+        Throwable failure = writerFailure;
+        if (failure != null) {
+            throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+        }
+    }
+    
+    private ExecutorService workers() {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(selector.getParallelism(), daemonThreads("filter-worker"));
+        }
+        return workers;
+    }
+    
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+    
+    private void shutdown() {
+        if (writer != null) {
+            writer.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+    
+    private ObjectName register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                return null;
+            }
+            server.registerMBean(this, name);
+            return name;
+        } catch (JMException e) {
+            log.warn("Couldn't register the filter MBean", e);
+            return null;
+        }
+    }
+    
+    private void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            log.warn("Couldn't unregister the filter MBean", e);
+        }
+    }
+    
+    private void closeStreams() {
+        try {
+            inputStream.close();
+            outputStream.close();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+    
+    private class MaskChunk implements Callable<Chunk> {
+        
+        private byte[] bytes;
+        private int length;
+        
+        MaskChunk(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+        
+        public Chunk call() {
+            engine.mask(bytes, 0, length, bytes);
+            return new Chunk(bytes, length);
+        }
+    }
+    
+    private static class Chunk {
+        
+        private final byte[] bytes;
+        private final int length;
+        
+        Chunk(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package mahergamal.logging.filters;
+
+/**
+ * What the {@link AdaptiveCreditCardFilter} is doing, registered with the platform MBean server as
+ * <code>mahergamal.logging.filters:type=AdaptiveCreditCardFilter</code> while it runs. The observations are those of
+ * the last completed window.
+ */
+public interface AdaptiveCreditCardFilterMXBean {
+    
+    public String getMode();
+    
+    public long getModeSwitches();
+    
+    public String getLastSwitchReason();
+    
+    public double getInputBytesPerSecond();
+    
+    public double getAverageLineLength();
+    
+    public double getCandidateDensity();
+    
+    public long getBytesRead();
+}
@@ -0,0 +1,251 @@
+package mahergamal.logging.filters;
+
+import mahergamal.cryptography.DigitChecksum;
+import mahergamal.logging.filters.impl.LuhnCardDetector;
+import mahergamal.logging.filters.jfr.CardMaskedEvent;
+
+/**
+ * Detects and masks credit cards, and whatever else its {@link Detector}s recognize, one character at a time and in a
+ * single pass. Every character is classified once, handed to all the detectors, and the digits of the spans they
+ * report get masked. A character can be let go as soon as no detector could still include it in a span, which for
+ * credit cards alone is once 18 more characters followed it, or anything that can't be part of a card (a line break
+ * for instance).
+ * <p>
+ * Overlapping spans are masked, and recorded as a {@link CardMaskedEvent}, as a single card. A scanner keeps the
+ * state of one stream and isn't thread-safe. It only ever looks at ASCII characters, so bytes of
+ * any ASCII compatible encoding (UTF-8 included) can be fed as they are.
+ */
+public class CardScanner {
+    
+    public static final int OTHER = 0;
+    public static final int DIGIT = 1;
+    public static final int DELIMITER = 2;
+    public static final int LETTER = 3;
+    
+    private static final byte[] CLASSES = new byte[256];
+    
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] = DIGIT;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CLASSES[c] = LETTER;
+        }
+        for (char c : new char[] { ' ', '\t', '\u000B', '\f', '-' }) {
+            CLASSES[c] = DELIMITER;
+        }
+    }
+    
+    private final Detector[] detectors;
+    private final char maskCharacter;
+    private final int maxPending;
+    private final char[] characters;
+    private final boolean[] masked;
+    private final int ringMask;
+    private long head;
+    private long tail;
+    private long classes;
+    private int undecided;
+    private long maskedCount;
+    private boolean spanOpen;
+    private long spanEnd;
+    private int spanLength;
+    private int spanDigits;
+    
+    public CardScanner(DigitChecksum checksum, char maskCharacter) {
+        this(maskCharacter, new LuhnCardDetector(checksum));
+    }
+    
+    public CardScanner(char maskCharacter, Detector... detectors) {
+        this.detectors = detectors;
+        this.maskCharacter = maskCharacter;
+        int maxLength = 1;
+        for (Detector detector : detectors) {
+            maxLength = Math.max(maxLength, detector.maxLength());
+        }
+        this.maxPending = maxLength;
+        int ringSize = Integer.highestOneBit(maxLength) << 1;
+        this.characters = new char[ringSize];
+        this.masked = new boolean[ringSize];
+        this.ringMask = ringSize - 1;
+    }
+    
+    public static int classify(int c) {
+        return c < CLASSES.length ? CLASSES[c] : OTHER;
+    }
+    
+    /**
+     * The most characters a single {@link #feed(char, char[], int)} can give back.
+     */
+    public int maxPending() {
+        return maxPending;
+    }
+    
+    /**
+     * Scans one more character and copies the characters that got decided to <code>out</code>, which must have room
+     * for {@link #maxPending()} of them.
+     * 
+     * @return the offset following the last copied character
+     */
+    public int feed(char c, char[] out, int offset) {
+        int decided = accept(c);
+        for (int i = 0; i < decided; i++) {
+            out[offset++] = take();
+        }
+        return offset;
+    }
+    
+    /**
+     * The byte flavor of {@link #feed(char, char[], int)}.
+     */
+    public int feed(byte b, byte[] out, int offset) {
+        int decided = accept(b & 0xFF);
+        for (int i = 0; i < decided; i++) {
+            out[offset++] = (byte) take();
+        }
+        return offset;
+    }
+    
+    /**
+     * Scans one more byte like {@link #feed(byte, byte[], int)}, but without copying the bytes that got decided : as
+     * long as none of them has to be masked, they are the input unchanged and the caller can use that instead.
+     * 
+     * @return how many bytes got let go of, or if one of them has to be masked, the complement (<code>~n</code>) of
+     *         the number of bytes let go of before it : it and the ones after it stay held back, for
+     *         {@link #release(byte[], int)} to give them out
+     */
+    public int skip(byte b) {
+        int decided = accept(b & 0xFF);
+        for (int i = 0; i < decided; i++) {
+            int index = (int) (head & ringMask);
+            if (masked[index] && classify(characters[index]) == DIGIT) {
+                return ~i;
+            }
+            head++;
+            closeReleasedSpan();
+        }
+        return decided;
+    }
+    
+    /**
+     * Copies the bytes that got decided but are still held back after a {@link #skip(byte)} to <code>out</code>.
+     */
+    public int release(byte[] out, int offset) {
+        while (pending() > undecided) {
+            out[offset++] = (byte) take();
+        }
+        return offset;
+    }
+    
+    /**
+     * Lets go of the characters still held back, as if the input ended here. An identifier cut in two by a drain only
+     * gets masked from the drain onwards.
+     */
+    public int drain(char[] out, int offset) {
+        while (head < tail) {
+            out[offset++] = take();
+        }
+        return offset;
+    }
+    
+    public int drain(byte[] out, int offset) {
+        while (head < tail) {
+            out[offset++] = (byte) take();
+        }
+        return offset;
+    }
+    
+    public int pending() {
+        return (int) (tail - head);
+    }
+    
+    /**
+     * How many characters were masked on their way out so far.
+     */
+    public long maskedCount() {
+        return maskedCount;
+    }
+    
+    private int accept(int c) {
+        int index = (int) (tail & ringMask);
+        characters[index] = (char) c;
+        masked[index] = false;
+        tail++;
+        
+        int characterClass = classify(c);
+        classes = (classes << 2) | characterClass;
+        int open = 0;
+        for (Detector detector : detectors) {
+            int length = detector.accept((char) c, characterClass, classes);
+            if (length > 0) {
+                mask(tail - length);
+            }
+            open = Math.max(open, detector.openLength());
+        }
+        undecided = Math.min(open, pending());
+        return pending() - undecided;
+    }
+    
+    /**
+     * Forgets the characters seen so far, what comes next is scanned as a new stream. Drain first.
+     */
+    public void reset() {
+        classes = 0;
+        for (Detector detector : detectors) {
+            detector.reset();
+        }
+    }
+    
+    private void mask(long from) {
+        from = Math.max(from, head);
+        if (!spanOpen || from >= spanEnd) {
+            closeSpan();
+            spanOpen = true;
+            spanEnd = from;
+            spanLength = 0;
+            spanDigits = 0;
+        }
+        for (long position = from; position < tail; position++) {
+            int index = (int) (position & ringMask);
+            masked[index] = true;
+            if (position >= spanEnd) {
+                spanLength++;
+                spanDigits += classify(characters[index]) == DIGIT ? 1 : 0;
+            }
+        }
+        spanEnd = tail;
+    }
+    
+    /**
+     * No span can grow anymore once its last character was let go of.
+     */
+    private void closeReleasedSpan() {
+        if (spanOpen && head >= spanEnd) {
+            closeSpan();
+        }
+    }
+    
+    private void closeSpan() {
+        if (!spanOpen) {
+            return;
+        }
+        spanOpen = false;
+        CardMaskedEvent event = new CardMaskedEvent();
+        if (event.shouldCommit()) {
+            event.digits = spanDigits;
+            event.layout = spanDigits == spanLength ? CardMaskedEvent.CONTIGUOUS : CardMaskedEvent.GROUPED;
+            event.commit();
+        }
+    }
+    
+    private char take() {
+        int index = (int) (head++ & ringMask);
+        closeReleasedSpan();
+        char c = characters[index];
+        if (masked[index] && classify(c) == DIGIT) {
+            maskedCount++;
+            return maskCharacter;
+        }
+        return c;
+    }
+}
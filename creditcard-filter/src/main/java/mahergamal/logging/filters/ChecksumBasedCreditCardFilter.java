@@ -1,19 +1,41 @@
 package mahergamal.logging.filters;
 
 import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import mahergamal.cryptography.Checksum;
 import mahergamal.cryptography.ChecksumFactory;
+import mahergamal.cryptography.impl.HmacDigitTokenizer;
 import mahergamal.cryptography.impl.LuhnChecksum;
+import mahergamal.cryptography.impl.LuhnDigitChecksum;
+import mahergamal.cryptography.impl.TokenDictionary;
+import mahergamal.io.FollowingFileInputStream;
+import mahergamal.logging.filters.impl.BatchedFlushPolicy;
+import mahergamal.logging.filters.impl.CharacterMaskingStrategy;
+import mahergamal.logging.filters.impl.IbanDetector;
+import mahergamal.logging.filters.impl.LuhnCardDetector;
+import mahergamal.logging.filters.impl.PerLineFlushPolicy;
+import mahergamal.logging.filters.impl.TokenizingMaskingStrategy;
+import mahergamal.logging.filters.jfr.BackpressureStallEvent;
+import mahergamal.logging.filters.jfr.CardMaskedEvent;
+import mahergamal.logging.filters.jfr.ChunkScannedEvent;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,22 +48,47 @@ import org.slf4j.LoggerFactory;
  */
 public class ChecksumBasedCreditCardFilter implements Runnable {
     
-    private static final String MASK_CHARACTER = "X";
+    private static final char MASK_CHARACTER = 'X';
+    
+    private static final long DEFAULT_FLUSH_BATCH_SIZE = 8192;
+    private static final long DEFAULT_FLUSH_LATENCY_MILLIS = 5;
+    private static final int DEFAULT_TOKEN_DICTIONARY_CAPACITY = 65536;
+    private static final long DEFAULT_ADAPTIVE_WINDOW_MILLIS = 250;
+    private static final long DEFAULT_PIPELINE_RATE = 1024 * 1024;
+    private static final long DEFAULT_PARALLEL_RATE = 16 * 1024 * 1024;
+    private static final String DEFAULT_PARALLEL_DENSITY = "0.4";
+    private static final long DEFAULT_MAX_PARALLEL_LINE_LENGTH = 16384;
     
     private static Logger log = LoggerFactory.getLogger(ChecksumBasedCreditCardFilter.class);
     
     private BufferedReader reader;
-    private OutputStreamWriter writer;
+    private Charset charset = Charset.defaultCharset();
+    private OutputStream output;
     private Class<? extends Checksum> checksumClass;
+    private FlushPolicy flushPolicy;
+    private MaskingStrategy maskingStrategy;
     
     Pattern[] sequencePatterns = new Pattern[] { Pattern.compile("(?=(\\d{14}))"), Pattern.compile("(?=(\\d{15}))"),
             Pattern.compile("(?=(\\d{16}))"), Pattern.compile("(?=(\\d{4}[-\\s]\\d{4}[-\\s]\\d{4}[-\\s]\\d{4}))") };
     
     public ChecksumBasedCreditCardFilter(InputStream inputStream, OutputStream outputStream,
             Class<? extends Checksum> checksumClass) {
-        this.reader = new BufferedReader(new InputStreamReader(inputStream));
-        this.writer = new OutputStreamWriter(outputStream);
+        this(inputStream, outputStream, checksumClass, new BatchedFlushPolicy(DEFAULT_FLUSH_BATCH_SIZE,
+                DEFAULT_FLUSH_LATENCY_MILLIS));
+    }
+    
+    public ChecksumBasedCreditCardFilter(InputStream inputStream, OutputStream outputStream,
+            Class<? extends Checksum> checksumClass, FlushPolicy flushPolicy) {
+        this(inputStream, outputStream, checksumClass, flushPolicy, new CharacterMaskingStrategy(MASK_CHARACTER));
+    }
+    
+    public ChecksumBasedCreditCardFilter(InputStream inputStream, OutputStream outputStream,
+            Class<? extends Checksum> checksumClass, FlushPolicy flushPolicy, MaskingStrategy maskingStrategy) {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, charset));
+        this.output = new StallRecordingOutputStream(outputStream);
         this.checksumClass = checksumClass;
+        this.flushPolicy = flushPolicy;
+        this.maskingStrategy = maskingStrategy;
     }
     
     @Override
@@ -50,24 +97,34 @@ public class ChecksumBasedCreditCardFilter implements Runnable {
             long startTimestamp = System.currentTimeMillis();
             String currentLine = null;
             int lineCounter = 1;
+            flushPolicy.start(output);
             while ((currentLine = reader.readLine()) != null) {
                 log.debug("==== Line {} ====", lineCounter++);
                 String filteredOutput = filterOutPotentialCreditCards(currentLine);
-                writeToOutputStream(filteredOutput);
-                writeToOutputStream("\n");
+                writeToOutputStream(filteredOutput + "\n");
             }
+            flushPolicy.finish();
             log.info("Credit card filter took : {} ms", System.currentTimeMillis() - startTimestamp);
+            reportFlushStatistics();
         } catch (IOException e) {
             log.error(e.getMessage(), e);
         } finally {
+            flushPolicy.close();
             closeStreams();
         }
     }
     
+    private void reportFlushStatistics() {
+        long flushCount = flushPolicy.getFlushCount();
+        long averageBatch = flushCount == 0 ? 0 : flushPolicy.getFlushedBytes() / flushCount;
+        log.info("Flushed {} times (average batch = {} bytes, largest batch = {} bytes)", new Object[] { flushCount,
+                averageBatch, flushPolicy.getLargestBatch() });
+    }
+    
     private void closeStreams() {
         try {
             reader.close();
-            writer.close();
+            output.close();
         } catch (IOException e) {
             log.error(e.getMessage(), e);
         }
@@ -75,11 +132,20 @@ public class ChecksumBasedCreditCardFilter implements Runnable {
     
     private String filterOutPotentialCreditCards(String input) {
         log.debug("Read  {} chars : '{}'", input.length(), input);
-        List<MatchedCreditCard> creditCards = findMatchingCreditCards(input);
-        return maskMatchedCreditCards(input, creditCards);
+        ChunkScannedEvent event = new ChunkScannedEvent();
+        event.begin();
+        List<MatchedCreditCard> creditCards = findMatchingCreditCards(input, event);
+        String output = maskMatchedCreditCards(input, creditCards);
+        event.end();
+        if (event.shouldCommit()) {
+            event.characters = input.length();
+            event.cards = creditCards.size();
+            event.commit();
+        }
+        return output;
     }
     
-    private List<MatchedCreditCard> findMatchingCreditCards(String input) {
+    private List<MatchedCreditCard> findMatchingCreditCards(String input, ChunkScannedEvent event) {
         List<MatchedCreditCard> creditCards = new ArrayList<MatchedCreditCard>();
         for (Pattern sequencePattern : sequencePatterns) {
             Matcher sequenceMatcher = sequencePattern.matcher(input);
@@ -92,6 +158,7 @@ public class ChecksumBasedCreditCardFilter implements Runnable {
                 log.debug("Match {} chars : '{}' (start = {}, end = {})", new Object[] { matchedText.length(),
                         matchedText, matchStartIndex, matchEndIndex });
                 
+                event.candidates++;
                 Checksum checksum = ChecksumFactory.instantiate(checksumClass, matchedText);
                 if (checksum.isValid()) {
                     MatchedCreditCard creditCard = new MatchedCreditCard(matchedText, matchStartIndex, matchEndIndex);
@@ -103,21 +170,190 @@ public class ChecksumBasedCreditCardFilter implements Runnable {
         return creditCards;
     }
     
+    private void recordMaskedCreditCard(MatchedCreditCard creditCard) {
+        CardMaskedEvent event = new CardMaskedEvent();
+        if (event.shouldCommit()) {
+            int length = creditCard.end - creditCard.start;
+            event.digits = creditCard.text.replaceAll("[^\\d]", "").length();
+            event.layout = event.digits == length ? CardMaskedEvent.CONTIGUOUS : CardMaskedEvent.GROUPED;
+            event.commit();
+        }
+    }
+    
     private String maskMatchedCreditCards(String input, List<MatchedCreditCard> creditCards) {
         StringBuilder output = new StringBuilder(input);
-        for (MatchedCreditCard creditCard : creditCards) {
+        for (MatchedCreditCard creditCard : mergeOverlappingCreditCards(input, creditCards)) {
             creditCard.maskTheInputAccordingly(output);
+            recordMaskedCreditCard(creditCard);
         }
         return output.toString();
     }
     
+    /**
+     * Overlapping matches are masked as a whole, so a tokenized card never ends up half replaced by the token of a
+     * card nested inside it.
+     */
+    private List<MatchedCreditCard> mergeOverlappingCreditCards(String input, List<MatchedCreditCard> creditCards) {
+        if (creditCards.size() < 2) {
+            return creditCards;
+        }
+        Collections.sort(creditCards, new Comparator<MatchedCreditCard>() {
+            public int compare(MatchedCreditCard first, MatchedCreditCard second) {
+                return first.start - second.start;
+            }
+        });
+        List<MatchedCreditCard> merged = new ArrayList<MatchedCreditCard>();
+        MatchedCreditCard current = creditCards.get(0);
+        for (MatchedCreditCard next : creditCards.subList(1, creditCards.size())) {
+            if (next.start < current.end) {
+                int end = Math.max(current.end, next.end);
+                current = new MatchedCreditCard(input.substring(current.start, end), current.start, end);
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+    
     private void writeToOutputStream(String text) throws IOException {
-        writer.write(text);
-        log.debug("Wrote {} chars : '{}'", text.length(), text.replace("\n", "\\n"));
+        byte[] bytes = text.getBytes(charset);
+        flushPolicy.write(bytes);
+        log.debug("Wrote {} bytes : '{}'", bytes.length, text.replace("\n", "\\n"));
     }
     
     public static void main(String[] args) throws IOException {
-        new ChecksumBasedCreditCardFilter(System.in, System.out, LuhnChecksum.class).run();
+        String engine = System.getProperty("filter.engine", "regex");
+        if ("framed".equals(engine)) {
+            runFramedFilter();
+        } else if ("adaptive".equals(engine)) {
+            new AdaptiveCreditCardFilter(configuredInput(), System.out, new MaskingEngine(configuredScanners()),
+                    configuredModeSelector()).run();
+        } else if ("streaming".equals(engine)) {
+            new StreamingCreditCardFilter(configuredInput(), System.out, configuredScanners().get()).run();
+        } else if ("regex".equals(engine)) {
+            new ChecksumBasedCreditCardFilter(configuredInput(), System.out, LuhnChecksum.class,
+                    configuredFlushPolicy(), configuredMaskingStrategy()).run();
+        } else {
+            throw new IllegalArgumentException("Unknown engine : " + engine);
+        }
+    }
+    
+    /**
+     * Masks with <code>X</code>s unless the <code>filter.mask</code> system property is <code>token</code>, in which
+     * case cards are replaced by tokens keyed with <code>filter.token.key</code> and cached in a dictionary of
+     * <code>filter.token.dictionary</code> entries (0 disables it).
+     */
+    static MaskingStrategy configuredMaskingStrategy() {
+        String mask = System.getProperty("filter.mask", "x");
+        if ("x".equals(mask)) {
+            return new CharacterMaskingStrategy(MASK_CHARACTER);
+        }
+        if (!"token".equals(mask)) {
+            throw new IllegalArgumentException("Unknown masking strategy : " + mask);
+        }
+        byte[] key;
+        String configuredKey = System.getProperty("filter.token.key");
+        if (configuredKey != null) {
+            key = configuredKey.getBytes(Charset.forName("UTF-8"));
+        } else {
+            log.warn("No filter.token.key given, tokens will only be stable within this run");
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        }
+        int capacity = Integer.getInteger("filter.token.dictionary", DEFAULT_TOKEN_DICTIONARY_CAPACITY);
+        TokenDictionary dictionary = capacity > 0 ? new TokenDictionary(capacity) : null;
+        return new TokenizingMaskingStrategy(new HmacDigitTokenizer(key, dictionary));
+    }
+    
+    /**
+     * Reads the standard input unless the <code>filter.follow</code> system property names a file to follow, in which
+     * case only lines appended from now on get filtered (or the whole file with
+     * <code>filter.follow.fromBeginning</code>).
+     */
+    static InputStream configuredInput() throws IOException {
+        String followedFile = System.getProperty("filter.follow");
+        if (followedFile == null) {
+            return System.in;
+        }
+        return new FollowingFileInputStream(Paths.get(followedFile), Boolean.getBoolean("filter.follow.fromBeginning"));
+    }
+    
+    /**
+     * Filters length prefixed records from the standard input to the standard output, or from TCP connections on
+     * <code>filter.framed.port</code> when it is given. Records are limited to <code>filter.framed.maxRecord</code>
+     * bytes.
+     */
+    static void runFramedFilter() {
+        int maxRecordLength = Integer.getInteger("filter.framed.maxRecord",
+                FramedCreditCardFilter.DEFAULT_MAX_RECORD_LENGTH);
+        Integer port = Integer.getInteger("filter.framed.port");
+        if (port != null) {
+            new FramedCreditCardServer(port, maxRecordLength, configuredScanners()).run();
+        } else {
+            new FramedCreditCardFilter(new FileInputStream(FileDescriptor.in).getChannel(), new FileOutputStream(
+                    FileDescriptor.out).getChannel(), maxRecordLength, configuredScanners().get()).run();
+        }
+    }
+    
+    /**
+     * Builds scanners for the streaming, framed and adaptive engines, with the detectors listed in the
+     * <code>filter.detectors</code> system property : <code>card</code> (the default) and <code>iban</code>.
+     */
+    static Supplier<CardScanner> configuredScanners() {
+        final String[] names = System.getProperty("filter.detectors", "card").split(",");
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim();
+            if (!"card".equals(names[i]) && !"iban".equals(names[i])) {
+                throw new IllegalArgumentException("Unknown detector : " + names[i]);
+            }
+        }
+        return new Supplier<CardScanner>() {
+            public CardScanner get() {
+                Detector[] detectors = new Detector[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    if ("card".equals(names[i])) {
+                        detectors[i] = new LuhnCardDetector(new LuhnDigitChecksum());
+                    } else {
+                        detectors[i] = new IbanDetector();
+                    }
+                }
+                return new CardScanner(MASK_CHARACTER, detectors);
+            }
+        };
+    }
+    
+    /**
+     * Thresholds of the adaptive engine : it observes its input over windows of <code>filter.adaptive.window</code>
+     * ms, pipelines past <code>filter.adaptive.pipelineRate</code> bytes per second and goes parallel past
+     * <code>filter.adaptive.parallelRate</code>, or sooner when <code>filter.adaptive.parallelDensity</code> of the
+     * input are digits, unless lines average more than <code>filter.adaptive.maxLineLength</code> bytes.
+     */
+    static ExecutionModeSelector configuredModeSelector() {
+        return new ExecutionModeSelector(Long.getLong("filter.adaptive.window", DEFAULT_ADAPTIVE_WINDOW_MILLIS),
+                Long.getLong("filter.adaptive.pipelineRate", DEFAULT_PIPELINE_RATE), Long.getLong(
+                        "filter.adaptive.parallelRate", DEFAULT_PARALLEL_RATE), Double.parseDouble(System.getProperty(
+                        "filter.adaptive.parallelDensity", DEFAULT_PARALLEL_DENSITY)), Long.getLong(
+                        "filter.adaptive.maxLineLength", DEFAULT_MAX_PARALLEL_LINE_LENGTH), Runtime.getRuntime()
+                        .availableProcessors());
+    }
+    
+    /**
+     * Picks the flush policy from the <code>filter.flush</code> system property : <code>line</code> flushes after
+     * every line, <code>batched</code> (the default) flushes every <code>filter.flush.size</code> bytes or
+     * <code>filter.flush.latency</code> ms.
+     */
+    static FlushPolicy configuredFlushPolicy() {
+        String policy = System.getProperty("filter.flush", "batched");
+        if ("line".equals(policy)) {
+            return new PerLineFlushPolicy();
+        }
+        if ("batched".equals(policy)) {
+            return new BatchedFlushPolicy(Long.getLong("filter.flush.size", DEFAULT_FLUSH_BATCH_SIZE), Long.getLong(
+                    "filter.flush.latency", DEFAULT_FLUSH_LATENCY_MILLIS));
+        }
+        throw new IllegalArgumentException("Unknown flush policy : " + policy);
     }
     
     private class MatchedCreditCard {
@@ -132,15 +368,32 @@ public class ChecksumBasedCreditCardFilter implements Runnable {
             this.end = end;
         }
         
-        @Override
-        public String toString() {
-            return this.text.replaceAll("\\d", MASK_CHARACTER);
-        }
-        
         public void maskTheInputAccordingly(StringBuilder input) {
             log.debug("Masked credit card : '{}' (start = {}, end = {})", new Object[] { text, start, end });
-            input.replace(start, end, this.toString());
+            maskingStrategy.mask(input, start, end);
         }
         
     }
+    
+    /**
+     * Times the writes of the batches the flush policy hands down to the underlying stream, the ones that can block.
+     */
+    private static class StallRecordingOutputStream extends FilterOutputStream {
+        
+        StallRecordingOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            BackpressureStallEvent event = new BackpressureStallEvent();
+            event.begin();
+            out.write(b, off, len);
+            event.end();
+            if (event.shouldCommit()) {
+                event.bytes = len;
+                event.commit();
+            }
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package mahergamal.logging.filters;
+
+/**
+ * Recognizes one kind of identifier for the {@link CardScanner}, which feeds every character to all of its detectors
+ * in a single pass. The scanner classifies each character once for all of them and keeps the classes of the last 32
+ * characters in a <code>long</code>, two bits each with the newest in the lowest bits, so most layout rules come down
+ * to comparing bits. A detector only says which span to mask, the scanner does the masking.
+ * <p>
+ * Detectors keep the state of one stream, every scanner needs instances of its own.
+ */
+public interface Detector {
+    
+    /**
+     * The longest span the detector can ever match, the scanner sizes its buffer after it.
+     */
+    public int maxLength();
+    
+    /**
+     * Takes the next character.
+     * 
+     * @return the length of the identifier ending with this character, or 0 if none does
+     */
+    public int accept(char c, int characterClass, long classes);
+    
+    /**
+     * How many of the last characters could still turn out to be part of an identifier. The scanner holds them back
+     * until they can't anymore.
+     */
+    public int openLength();
+    
+    /**
+     * Forgets everything seen so far, the next character starts a new stream.
+     */
+    public void reset();
+}
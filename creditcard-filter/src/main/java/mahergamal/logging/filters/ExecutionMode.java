@@ -0,0 +1,16 @@
+package mahergamal.logging.filters;
+
+/**
+ * How the {@link AdaptiveCreditCardFilter} gets its chunks masked. The output is the same in every mode.
+ */
+public enum ExecutionMode {
+    
+    /** The reading thread masks and writes each chunk itself. */
+    SEQUENTIAL,
+    
+    /** The reading thread hands the chunks over to a writing thread, which masks and writes them. */
+    PIPELINED,
+    
+    /** Chunks are masked by a pool of threads, and written in order by the writing thread. */
+    PARALLEL
+}
@@ -0,0 +1,106 @@
+package mahergamal.logging.filters;
+
+/**
+ * Picks the {@link ExecutionMode} of the {@link AdaptiveCreditCardFilter} from what it observed of its input over the
+ * last window : the input rate, the average line length and the candidate density (the share of digits).
+ * <p>
+ * Input coming faster than <code>pipelineRate</code> bytes per second gets pipelined. It goes parallel past
+ * <code>parallelRate</code>, or sooner when at least <code>parallelDensity</code> of it is digits, since masking is
+ * then most of the work. Chunks are cut at line breaks, so lines averaging more than <code>maxParallelLineLength</code>
+ * bytes don't go parallel. A mode is only left once the rate that led to it halved, so a bursty input doesn't make
+ * the filter switch back and forth, and never while the input is backlogged : the rate then only tells how fast the
+ * filter keeps up.
+ */
+public class ExecutionModeSelector {
+    
+    private static final double MEGABYTE = 1024 * 1024;
+    
+    private final long windowMillis;
+    private final long pipelineRate;
+    private final long parallelRate;
+    private final double parallelDensity;
+    private final long maxParallelLineLength;
+    private final int parallelism;
+    private String reason = "started";
+    
+    public ExecutionModeSelector(long windowMillis, long pipelineRate, long parallelRate, double parallelDensity,
+            long maxParallelLineLength, int parallelism) {
+        if (windowMillis < 0 || pipelineRate < 0 || parallelRate < pipelineRate || parallelism < 1) {
+            throw new IllegalArgumentException("Invalid thresholds.");
+        }
+        this.windowMillis = windowMillis;
+        this.pipelineRate = pipelineRate;
+        this.parallelRate = parallelRate;
+        this.parallelDensity = parallelDensity;
+        this.maxParallelLineLength = maxParallelLineLength;
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * How long the filter observes its input between two selections.
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+    
+    /**
+     * Threads masking chunks in parallel mode, never picked with a single one.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    /**
+     * @param backlogged whether more input was already waiting after some read of the window
+     * @return the mode for the next window, <code>current</code> if nothing calls for a change
+     */
+    public ExecutionMode select(ExecutionMode current, double bytesPerSecond, double averageLineLength,
+            double candidateDensity, boolean backlogged) {
+        boolean parallelCalledFor = bytesPerSecond >= parallelRate
+                || (bytesPerSecond >= pipelineRate && candidateDensity >= parallelDensity);
+        boolean parallelPossible = parallelism > 1 && averageLineLength <= maxParallelLineLength;
+        
+        if (current != ExecutionMode.SEQUENTIAL && bytesPerSecond < pipelineRate / 2.0 && !backlogged) {
+            return switchTo(ExecutionMode.SEQUENTIAL, "input rate " + rate(bytesPerSecond) + " < "
+                    + rate(pipelineRate / 2.0));
+        }
+        if (current != ExecutionMode.PARALLEL && parallelCalledFor && parallelPossible) {
+            if (bytesPerSecond >= parallelRate) {
+                return switchTo(ExecutionMode.PARALLEL, "input rate " + rate(bytesPerSecond) + " >= "
+                        + rate(parallelRate));
+            }
+            return switchTo(ExecutionMode.PARALLEL, String.format("candidate density %.1f%% >= %.1f%%",
+                    100 * candidateDensity, 100 * parallelDensity));
+        }
+        if (current == ExecutionMode.SEQUENTIAL && bytesPerSecond >= pipelineRate) {
+            return switchTo(ExecutionMode.PIPELINED, "input rate " + rate(bytesPerSecond) + " >= "
+                    + rate(pipelineRate));
+        }
+        if (current == ExecutionMode.PARALLEL && !parallelPossible) {
+            return switchTo(ExecutionMode.PIPELINED, String.format("lines average %.0f bytes > %d bytes",
+                    averageLineLength, maxParallelLineLength));
+        }
+        if (current == ExecutionMode.PARALLEL && bytesPerSecond < parallelRate / 2.0
+                && candidateDensity < parallelDensity && !backlogged) {
+            return switchTo(ExecutionMode.PIPELINED, "input rate " + rate(bytesPerSecond) + " < "
+                    + rate(parallelRate / 2.0));
+        }
+        return current;
+    }
+    
+    /**
+     * Why the last mode change happened.
+     */
+    public String getReason() {
+        return reason;
+    }
+    
+    private ExecutionMode switchTo(ExecutionMode mode, String reason) {
+        this.reason = reason;
+        return mode;
+    }
+    
+    private static String rate(double bytesPerSecond) {
+        return String.format("%.2f MB/s", bytesPerSecond / MEGABYTE);
+    }
+}
@@ -0,0 +1,37 @@
+package mahergamal.logging.filters;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Decides when the filtered output gets pushed down to the underlying stream. The filter hands every line over to the
+ * policy, which holds on to them and writes and flushes them together whenever it sees fit : nothing reaches the
+ * output in between. Safe to call from several threads.
+ */
+public interface FlushPolicy extends Closeable {
+    
+    public void start(OutputStream output);
+    
+    /**
+     * @param line the encoded line, line break included
+     */
+    public void write(byte[] line) throws IOException;
+    
+    /**
+     * Flushes whatever is still pending, after the last line.
+     */
+    public void finish() throws IOException;
+    
+    /**
+     * Releases what the policy holds on to, whether or not it finished. Flushes nothing.
+     */
+    @Override
+    public void close();
+    
+    public long getFlushCount();
+    
+    public long getFlushedBytes();
+    
+    public long getLargestBatch();
+}
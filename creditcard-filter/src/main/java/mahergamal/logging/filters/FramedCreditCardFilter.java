@@ -0,0 +1,126 @@
+package mahergamal.logging.filters;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Filters length prefixed records instead of lines : each record is a 4 bytes big endian length followed by that many
+ * bytes, and goes back out framed the same way. Records can hold line breaks (a stack trace stays one record), and
+ * nobody has to look for delimiters since the lengths tell where records end.
+ * <p>
+ * Input is read in bulk, as many records as the buffer holds at once. Masking never changes the length of a record, so
+ * records are masked in place and every complete record of the buffer goes back out in a single write, header
+ * included, without any copy. Cards never span records.
+ */
+public class FramedCreditCardFilter implements Runnable {
+    
+    public static final int DEFAULT_MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+    
+    private static final int HEADER_LENGTH = 4;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    
+    private static Logger log = LoggerFactory.getLogger(FramedCreditCardFilter.class);
+    
+    private ReadableByteChannel input;
+    private WritableByteChannel output;
+    private int maxRecordLength;
+    private CardScanner scanner;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long recordCount;
+    
+    public FramedCreditCardFilter(ReadableByteChannel input, WritableByteChannel output, int maxRecordLength,
+            CardScanner scanner) {
+        this.input = input;
+        this.output = output;
+        this.maxRecordLength = maxRecordLength;
+        this.scanner = scanner;
+    }
+    
+    @Override
+    public void run() {
+        try {
+            long startTimestamp = System.currentTimeMillis();
+            while (input.read(buffer) != -1) {
+                filterCompleteRecords();
+            }
+            filterCompleteRecords();
+            if (buffer.position() > 0) {
+                throw new EOFException("Input ended in the middle of a record (" + buffer.position() + " bytes left)");
+            }
+            log.info("Framed credit card filter took : {} ms for {} records", System.currentTimeMillis()
+                    - startTimestamp, recordCount);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        } finally {
+            closeChannels();
+        }
+    }
+    
+    /**
+     * Masks and writes out the complete records read so far, then keeps the partial one at the start of the buffer,
+     * growing the buffer when that record wouldn't fit in it.
+     */
+    private void filterCompleteRecords() throws IOException {
+        byte[] bytes = buffer.array();
+        int end = buffer.position();
+        int position = 0;
+        int nextRecordLength = -1;
+        while (end - position >= HEADER_LENGTH) {
+            int length = buffer.getInt(position);
+            if (length < 0 || length > maxRecordLength) {
+                throw new ProtocolException("Invalid record length : " + length);
+            }
+            if (end - position - HEADER_LENGTH < length) {
+                nextRecordLength = length;
+                break;
+            }
+            maskRecord(bytes, position + HEADER_LENGTH, length);
+            position += HEADER_LENGTH + length;
+            recordCount++;
+        }
+        
+        if (position > 0) {
+            ByteBuffer completeRecords = ByteBuffer.wrap(bytes, 0, position);
+            while (completeRecords.hasRemaining()) {
+                output.write(completeRecords);
+            }
+        }
+        buffer.limit(end).position(position);
+        buffer.compact();
+        if (nextRecordLength > buffer.capacity() - HEADER_LENGTH) {
+            ByteBuffer larger = ByteBuffer.allocate(HEADER_LENGTH + nextRecordLength);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+    
+    /**
+     * The scanner never gives back more bytes than it took, so it can write over the record as it reads it. It is
+     * reset afterwards, so no card spans two records.
+     */
+    private void maskRecord(byte[] bytes, int offset, int length) {
+        int masked = offset;
+        for (int i = offset; i < offset + length; i++) {
+            masked = scanner.feed(bytes[i], bytes, masked);
+        }
+        scanner.drain(bytes, masked);
+        scanner.reset();
+    }
+    
+    private void closeChannels() {
+        try {
+            input.close();
+            output.close();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package mahergamal.logging.filters;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the {@link FramedCreditCardFilter} over TCP : every connection sends framed records and reads them back
+ * masked, on a thread of its own.
+ */
+public class FramedCreditCardServer implements Runnable {
+    
+    private static Logger log = LoggerFactory.getLogger(FramedCreditCardServer.class);
+    
+    private int port;
+    private int maxRecordLength;
+    private Supplier<CardScanner> scanners;
+    private ExecutorService executor = Executors.newCachedThreadPool();
+    
+    public FramedCreditCardServer(int port, int maxRecordLength, Supplier<CardScanner> scanners) {
+        this.port = port;
+        this.maxRecordLength = maxRecordLength;
+        this.scanners = scanners;
+    }
+    
+    @Override
+    public void run() {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            log.info("Listening for framed records on port {}", port);
+            while (true) {
+                SocketChannel connection = server.accept();
+                log.debug("Accepted {}", connection.getRemoteAddress());
+                executor.execute(new FramedCreditCardFilter(connection, connection, maxRecordLength,
+                        scanners.get()));
+            }
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
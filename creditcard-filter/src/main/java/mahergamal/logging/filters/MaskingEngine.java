@@ -0,0 +1,124 @@
+package mahergamal.logging.filters;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Masks credit cards, and whatever else the configured detectors recognize, in whole strings and buffers handed over
+ * by the caller, for code that masks payloads inline rather than filtering a stream. An engine is immutable and is
+ * meant to be built once and shared : every thread gets a scanner and scratch space of its own on first use, and
+ * reuses them on every call after that, so calls take no locks and allocate nothing but their result.
+ * <p>
+ * Each call is scanned on its own, an identifier cut in two between calls isn't masked. Masking never changes the
+ * length of the input.
+ */
+public class MaskingEngine {
+    
+    private final ThreadLocal<Scratch> scratch;
+    
+    /**
+     * @param scanners gives a new scanner, with the detectors to use, each time it's called : once per thread using
+     *            the engine
+     */
+    public MaskingEngine(final Supplier<CardScanner> scanners) {
+        this.scratch = new ThreadLocal<Scratch>() {
+            @Override
+            protected Scratch initialValue() {
+                return new Scratch(scanners.get());
+            }
+        };
+    }
+    
+    /**
+     * @return the masked text, the very same string if there was nothing to mask in it
+     */
+    public String mask(CharSequence text) {
+        Scratch scratch = this.scratch.get();
+        CardScanner scanner = scratch.scanner;
+        char[] chars = scratch.chars(text.length());
+        long maskedBefore = scanner.maskedCount();
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            count = scanner.feed(text.charAt(i), chars, count);
+        }
+        scanner.drain(chars, count);
+        scanner.reset();
+        if (scanner.maskedCount() == maskedBefore) {
+            return text.toString();
+        }
+        return new String(chars, 0, text.length());
+    }
+    
+    /**
+     * Masks <code>length</code> bytes of <code>input</code> into the start of <code>output</code>, which may be
+     * <code>input</code> itself.
+     *
+     * @return the number of bytes written, always <code>length</code>
+     */
+    public int mask(byte[] input, int offset, int length, byte[] output) {
+        Objects.checkFromIndexSize(offset, length, input.length);
+        Objects.checkFromIndexSize(0, length, output.length);
+        mask(input, offset, length, output, 0);
+        return length;
+    }
+    
+    /**
+     * Masks the remaining bytes of <code>buffer</code> in place, leaving its position and limit alone.
+     */
+    public void mask(ByteBuffer buffer) {
+        if (buffer.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + buffer.position();
+            mask(buffer.array(), offset, length, buffer.array(), offset);
+            return;
+        }
+        byte[] bytes = scratch.get().bytes(length);
+        buffer.duplicate().get(bytes, 0, length);
+        mask(bytes, 0, length, bytes, 0);
+        buffer.duplicate().put(bytes, 0, length);
+    }
+    
+    /**
+     * The scanner never gives back more bytes than it took, so the output may overlap the input as long as it doesn't
+     * start after it.
+     */
+    private void mask(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        CardScanner scanner = scratch.get().scanner;
+        int count = outputOffset;
+        for (int i = offset; i < offset + length; i++) {
+            count = scanner.feed(input[i], output, count);
+        }
+        scanner.drain(output, count);
+        scanner.reset();
+    }
+    
+    private static class Scratch {
+        
+        private final CardScanner scanner;
+        private char[] chars = new char[0];
+        private byte[] bytes = new byte[0];
+        
+        Scratch(CardScanner scanner) {
+            this.scanner = scanner;
+        }
+        
+        char[] chars(int length) {
+            if (chars.length < length) {
+                chars = new char[Math.max(length, 2 * chars.length)];
+            }
+            return chars;
+        }
+        
+        byte[] bytes(int length) {
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package mahergamal.logging.filters;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import mahergamal.cryptography.impl.LuhnDigitChecksum;
+
+/**
+ * Masks credit cards on their way to the wrapped stream, so any application can protect its own output (a log file,
+ * <code>System.out</code>, an HTTP response) without piping it through the filter. Bytes are masked as they are
+ * written, only the few that could still turn out to be part of a card are held back until the next write or the
+ * {@link #close()} : a {@link #flush()} doesn't let them out, or a card written around it would leak. Meant for ASCII
+ * compatible encodings such as UTF-8.
+ */
+public class MaskingOutputStream extends FilterOutputStream {
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    private final CardScanner scanner;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+    
+    public MaskingOutputStream(OutputStream out) {
+        this(out, new CardScanner(new LuhnDigitChecksum(), 'X'));
+    }
+    
+    public MaskingOutputStream(OutputStream out, CardScanner scanner) {
+        super(out);
+        this.scanner = scanner;
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        count = scanner.feed((byte) b, buffer, count);
+        writeBuffer();
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            count = scanner.feed(b[i], buffer, count);
+            if (count > BUFFER_SIZE - scanner.maxPending()) {
+                writeBuffer();
+            }
+        }
+        writeBuffer();
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+        out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            count = scanner.drain(buffer, count);
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+    
+    private void writeBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
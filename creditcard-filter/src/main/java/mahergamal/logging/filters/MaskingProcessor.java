@@ -0,0 +1,198 @@
+package mahergamal.logging.filters;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+
+import mahergamal.cryptography.impl.LuhnDigitChecksum;
+
+/**
+ * Masks credit cards in a reactive stream of byte chunks, for pipelines that never block on an
+ * <code>InputStream</code>. Each chunk coming in gives at most one chunk going out, so the processor never asks
+ * upstream for more chunks than downstream asked for.
+ * <p>
+ * A chunk in which nothing had to be masked is passed down as a view of the same memory instead of a copy, upstream
+ * must therefore not reuse the buffers it hands over. Chunks following one whose end was held back are copied. Only
+ * the few bytes at the end of a chunk that may still turn out to be part of a card in the next one are held back.
+ * Accepts a single subscriber.
+ */
+public class MaskingProcessor implements Flow.Processor<ByteBuffer, ByteBuffer> {
+    
+    private final CardScanner scanner;
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super ByteBuffer> downstream;
+    private long demand;
+    private long outstanding;
+    private ByteBuffer tail;
+    private boolean completed;
+    private boolean terminated;
+    private Throwable error;
+    
+    public MaskingProcessor() {
+        this(new CardScanner(new LuhnDigitChecksum(), 'X'));
+    }
+    
+    public MaskingProcessor(CardScanner scanner) {
+        this.scanner = scanner;
+    }
+    
+    @Override
+    public synchronized void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        if (downstream != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {
+                }
+                
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Only one subscriber is supported."));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            public void request(long n) {
+                requested(n);
+            }
+            
+            public void cancel() {
+                cancelled();
+            }
+        });
+        if (error != null) {
+            terminate(error);
+        } else {
+            complete();
+        }
+    }
+    
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        requestUpstream();
+    }
+    
+    @Override
+    public synchronized void onNext(ByteBuffer item) {
+        if (terminated) {
+            return;
+        }
+        outstanding--;
+        ByteBuffer masked = mask(item);
+        if (masked != null) {
+            demand--;
+            downstream.onNext(masked);
+        }
+        requestUpstream();
+    }
+    
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        error = throwable;
+        if (downstream != null) {
+            terminate(throwable);
+        }
+    }
+    
+    @Override
+    public synchronized void onComplete() {
+        byte[] remaining = new byte[scanner.pending()];
+        scanner.drain(remaining, 0);
+        tail = remaining.length > 0 ? ByteBuffer.wrap(remaining) : null;
+        completed = true;
+        complete();
+    }
+    
+    private synchronized void requested(long n) {
+        if (terminated) {
+            return;
+        }
+        if (n <= 0) {
+            if (upstream != null) {
+                upstream.cancel();
+            }
+            terminate(new IllegalArgumentException("Requested " + n + " chunks, must be > 0."));
+            return;
+        }
+        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        requestUpstream();
+        complete();
+    }
+    
+    private synchronized void cancelled() {
+        terminated = true;
+        if (upstream != null) {
+            upstream.cancel();
+        }
+    }
+    
+    private void requestUpstream() {
+        if (upstream != null && !completed && !terminated && demand > outstanding) {
+            long n = demand - outstanding;
+            outstanding = demand;
+            upstream.request(n);
+        }
+    }
+    
+    private void complete() {
+        if (!completed || terminated || downstream == null) {
+            return;
+        }
+        if (tail != null) {
+            if (demand == 0) {
+                return;
+            }
+            demand--;
+            downstream.onNext(tail);
+            tail = null;
+        }
+        terminated = true;
+        downstream.onComplete();
+    }
+    
+    private void terminate(Throwable throwable) {
+        if (!terminated) {
+            terminated = true;
+            downstream.onError(throwable);
+        }
+    }
+    
+    /**
+     * When nothing was held back from the previous chunk, the chunk is first scanned without writing anything : if
+     * nothing in it has to be masked, what the scanner let go of is the beginning of the chunk itself, which is passed
+     * down as it is. The chunk only gets copied once something in it has to be masked, or when bytes held back from
+     * the previous chunk have to go first.
+     * 
+     * @return the masked chunk, or <code>null</code> when every byte of it is still held back
+     */
+    private ByteBuffer mask(ByteBuffer item) {
+        int start = item.position();
+        int next = start;
+        int passed = 0;
+        if (scanner.pending() == 0) {
+            int decided = 0;
+            while (next < item.limit() && decided >= 0) {
+                decided = scanner.skip(item.get(next++));
+                passed += decided >= 0 ? decided : ~decided;
+            }
+            if (decided >= 0) {
+                if (passed == 0) {
+                    return null;
+                }
+                ByteBuffer view = item.duplicate();
+                view.limit(start + passed);
+                return view;
+            }
+        }
+        byte[] masked = new byte[item.remaining() + scanner.maxPending()];
+        item.duplicate().get(masked, 0, passed);
+        int count = scanner.release(masked, passed);
+        for (int i = next; i < item.limit(); i++) {
+            count = scanner.feed(item.get(i), masked, count);
+        }
+        return count > 0 ? ByteBuffer.wrap(masked, 0, count) : null;
+    }
+}
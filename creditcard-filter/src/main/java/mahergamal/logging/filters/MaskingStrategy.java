@@ -0,0 +1,10 @@
+package mahergamal.logging.filters;
+
+/**
+ * Hides the digits of a detected credit card. Implementations must leave every non-digit character in place and keep
+ * the text length unchanged, so the spans of the other cards in the same line stay valid.
+ */
+public interface MaskingStrategy {
+    
+    public void mask(StringBuilder text, int start, int end);
+}
@@ -0,0 +1,91 @@
+package mahergamal.logging.filters;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import mahergamal.cryptography.impl.LuhnDigitChecksum;
+
+/**
+ * The character flavor of {@link MaskingOutputStream}, for appenders and responses that write text. Like it, a
+ * {@link #flush()} only lets out the characters that got decided, the rest waits for the next write or the
+ * {@link #close()}.
+ */
+public class MaskingWriter extends FilterWriter {
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    private final CardScanner scanner;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int count;
+    
+    public MaskingWriter(Writer out) {
+        this(out, new CardScanner(new LuhnDigitChecksum(), 'X'));
+    }
+    
+    public MaskingWriter(Writer out, CardScanner scanner) {
+        super(out);
+        this.scanner = scanner;
+    }
+    
+    @Override
+    public void write(int c) throws IOException {
+        synchronized (lock) {
+            count = scanner.feed((char) c, buffer, count);
+            writeBuffer();
+        }
+    }
+    
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        synchronized (lock) {
+            for (int i = off; i < off + len; i++) {
+                count = scanner.feed(cbuf[i], buffer, count);
+                if (count > BUFFER_SIZE - scanner.maxPending()) {
+                    writeBuffer();
+                }
+            }
+            writeBuffer();
+        }
+    }
+    
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        synchronized (lock) {
+            for (int i = off; i < off + len; i++) {
+                count = scanner.feed(str.charAt(i), buffer, count);
+                if (count > BUFFER_SIZE - scanner.maxPending()) {
+                    writeBuffer();
+                }
+            }
+            writeBuffer();
+        }
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            writeBuffer();
+            out.flush();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            try {
+                count = scanner.drain(buffer, count);
+                flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+    
+    private void writeBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
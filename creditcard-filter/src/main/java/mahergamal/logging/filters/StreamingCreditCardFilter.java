@@ -0,0 +1,59 @@
+package mahergamal.logging.filters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Filters a stream through a {@link MaskingOutputStream} instead of the patterns of
+ * {@link ChecksumBasedCreditCardFilter} : bytes are copied as they come, line breaks included, and the output is
+ * flushed whenever the input runs dry.
+ */
+public class StreamingCreditCardFilter implements Runnable {
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    private static Logger log = LoggerFactory.getLogger(StreamingCreditCardFilter.class);
+    
+    private InputStream inputStream;
+    private OutputStream outputStream;
+    private MaskingOutputStream maskingStream;
+    
+    public StreamingCreditCardFilter(InputStream inputStream, OutputStream outputStream, CardScanner scanner) {
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.maskingStream = new MaskingOutputStream(outputStream, scanner);
+    }
+    
+    @Override
+    public void run() {
+        try {
+            long startTimestamp = System.currentTimeMillis();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                maskingStream.write(buffer, 0, read);
+                if (inputStream.available() == 0) {
+                    outputStream.flush();
+                }
+            }
+            log.info("Streaming credit card filter took : {} ms", System.currentTimeMillis() - startTimestamp);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        } finally {
+            closeStreams();
+        }
+    }
+    
+    private void closeStreams() {
+        try {
+            inputStream.close();
+            maskingStream.close();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package mahergamal.logging.filters.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import mahergamal.logging.filters.FlushPolicy;
+import mahergamal.logging.filters.jfr.FlushEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the pending lines and keeps the flush statistics shared by all the policies. The pending lines are written
+ * and flushed under the policy's lock, so a flush never misses a line or counts one it didn't write.
+ */
+public abstract class AbstractFlushPolicy implements FlushPolicy {
+    
+    private static Logger log = LoggerFactory.getLogger(AbstractFlushPolicy.class);
+    
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private OutputStream output;
+    private long pendingBytes;
+    private long flushCount;
+    private long flushedBytes;
+    private long largestBatch;
+    
+    @Override
+    public void start(OutputStream output) {
+        this.output = output;
+    }
+    
+    @Override
+    public synchronized void write(byte[] line) throws IOException {
+        pending.write(line, 0, line.length);
+        pendingBytes += line.length;
+        afterLineWritten(pendingBytes);
+    }
+    
+    @Override
+    public synchronized void finish() throws IOException {
+        flush();
+    }
+    
+    @Override
+    public void close() {
+    }
+    
+    protected abstract void afterLineWritten(long pendingBytes) throws IOException;
+    
+    protected synchronized void flush() throws IOException {
+        if (pendingBytes == 0) {
+            return;
+        }
+        FlushEvent event = new FlushEvent();
+        event.begin();
+        pending.writeTo(output);
+        pending.reset();
+        output.flush();
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = pendingBytes;
+            event.policy = getClass().getSimpleName();
+            event.commit();
+        }
+        flushCount++;
+        flushedBytes += pendingBytes;
+        largestBatch = Math.max(largestBatch, pendingBytes);
+        log.debug("Flushed {} bytes", pendingBytes);
+        pendingBytes = 0;
+    }
+    
+    @Override
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+    
+    @Override
+    public synchronized long getFlushedBytes() {
+        return flushedBytes;
+    }
+    
+    @Override
+    public synchronized long getLargestBatch() {
+        return largestBatch;
+    }
+}
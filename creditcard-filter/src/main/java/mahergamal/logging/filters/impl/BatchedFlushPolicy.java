@@ -0,0 +1,85 @@
+package mahergamal.logging.filters.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batches lines until either <code>maxBatchSize</code> bytes are pending or the oldest pending line has waited
+ * <code>maxLatencyMillis</code>, whichever comes first. The latency bound is enforced by a timer thread so a quiet
+ * input never leaves masked lines stuck in the buffers.
+ */
+public class BatchedFlushPolicy extends AbstractFlushPolicy {
+    
+    private static Logger log = LoggerFactory.getLogger(BatchedFlushPolicy.class);
+    
+    private final long maxBatchSize;
+    private final long maxLatencyMillis;
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> scheduledFlush;
+    
+    public BatchedFlushPolicy(long maxBatchSize, long maxLatencyMillis) {
+        if (maxBatchSize < 1 || maxLatencyMillis < 1) {
+            throw new IllegalArgumentException("Batch size and latency must be >= 1.");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+    
+    @Override
+    public void start(OutputStream output) {
+        super.start(output);
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "flush-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    @Override
+    protected void afterLineWritten(long pendingBytes) throws IOException {
+        if (pendingBytes >= maxBatchSize) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = timer.schedule(new Runnable() {
+                public void run() {
+                    flushOnTimer();
+                }
+            }, maxLatencyMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private synchronized void flushOnTimer() {
+        try {
+            scheduledFlush = null;
+            flush();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    protected synchronized void flush() throws IOException {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        super.flush();
+    }
+    
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package mahergamal.logging.filters.impl;
+
+import mahergamal.logging.filters.MaskingStrategy;
+
+/**
+ * Replaces every digit with the same mask character.
+ */
+public class CharacterMaskingStrategy implements MaskingStrategy {
+    
+    private final char maskCharacter;
+    
+    public CharacterMaskingStrategy(char maskCharacter) {
+        this.maskCharacter = maskCharacter;
+    }
+    
+    @Override
+    public void mask(StringBuilder text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isDigit(text.charAt(i))) {
+                text.setCharAt(i, maskCharacter);
+            }
+        }
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
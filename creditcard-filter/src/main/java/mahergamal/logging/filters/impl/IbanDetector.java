@@ -0,0 +1,171 @@
+package mahergamal.logging.filters.impl;
+
+import mahergamal.logging.filters.CardScanner;
+import mahergamal.logging.filters.Detector;
+
+/**
+ * International bank account numbers : a country code, 2 check digits and the national account number, either
+ * compact or in groups of 4 separated by single spaces, with the length fixed by the country and a remainder of 1
+ * modulo 97 (ISO 13616). The remainder is computed as the characters come in, so an IBAN costs nothing more to
+ * validate once its last character arrives. Only its digits get masked, like those of a card.
+ */
+public class IbanDetector implements Detector {
+    
+    private static final String LENGTHS = "AD24 AE23 AL28 AT20 AZ28 BA20 BE16 BG22 BH22 BR29 CH21 CR22 CY28 CZ24 DE22 "
+            + "DK18 DO28 EE20 ES24 FI18 FO18 FR27 GB22 GE22 GI23 GL18 GR27 GT28 HR21 HU28 IE22 IL23 IS26 IT27 JO30 "
+            + "KW30 KZ20 LB28 LI21 LT20 LU20 LV21 MC27 MD24 ME22 MK19 MR27 MT31 MU30 NL18 NO15 PK24 PL28 PS29 PT25 "
+            + "QA29 RO24 RS22 SA24 SE24 SI19 SK24 SM27 TN24 TR26 UA29 VG24 XK20";
+    
+    private static final int[] LENGTH_BY_COUNTRY = new int[26 * 26];
+    private static final int MAX_ALPHANUMERICS;
+    private static final int MAX_CANDIDATES = 4;
+    private static final int GROUP_LENGTH = 4;
+    
+    /** Two letters followed by two digits, the start of an IBAN. */
+    private static final long PREFIX_CLASSES = CardScanner.LETTER << 6 | CardScanner.LETTER << 4
+            | CardScanner.DIGIT << 2 | CardScanner.DIGIT;
+    private static final long PREFIX_MASK = 0xFF;
+    
+    static {
+        int longest = 0;
+        for (String entry : LENGTHS.split(" ")) {
+            int length = Integer.parseInt(entry.substring(2));
+            LENGTH_BY_COUNTRY[country(entry.charAt(0), entry.charAt(1))] = length;
+            longest = Math.max(longest, length);
+        }
+        MAX_ALPHANUMERICS = longest;
+    }
+    
+    private final int[] consumed = new int[MAX_CANDIDATES];
+    private final int[] alphanumerics = new int[MAX_CANDIDATES];
+    private final int[] expected = new int[MAX_CANDIDATES];
+    private final int[] remainder = new int[MAX_CANDIDATES];
+    private final int[] prefix = new int[MAX_CANDIDATES];
+    private final boolean[] grouped = new boolean[MAX_CANDIDATES];
+    private final boolean[] afterSpace = new boolean[MAX_CANDIDATES];
+    private int candidates;
+    private char[] lastCharacters = new char[GROUP_LENGTH];
+    private int prefixLength;
+    
+    private static int country(char first, char second) {
+        return (first - 'A') * 26 + (second - 'A');
+    }
+    
+    private static int value(char c) {
+        return c <= '9' ? c - '0' : c - 'A' + 10;
+    }
+    
+    private static int append(int remainder, char c) {
+        return c <= '9' ? (remainder * 10 + c - '0') % 97 : (remainder * 100 + c - 'A' + 10) % 97;
+    }
+    
+    @Override
+    public int maxLength() {
+        return MAX_ALPHANUMERICS + (MAX_ALPHANUMERICS - 1) / GROUP_LENGTH;
+    }
+    
+    @Override
+    public int accept(char c, int characterClass, long classes) {
+        System.arraycopy(lastCharacters, 1, lastCharacters, 0, GROUP_LENGTH - 1);
+        lastCharacters[GROUP_LENGTH - 1] = c;
+        
+        int matched = 0;
+        for (int i = candidates - 1; i >= 0; i--) {
+            int length = advance(i, c, characterClass);
+            if (length != 0) {
+                if (length > 0) {
+                    matched = Math.max(matched, length);
+                }
+                remove(i);
+            }
+        }
+        if ((classes & PREFIX_MASK) == PREFIX_CLASSES) {
+            start();
+        }
+        prefixLength = prefixLength(classes);
+        return matched;
+    }
+    
+    @Override
+    public int openLength() {
+        int open = prefixLength;
+        for (int i = 0; i < candidates; i++) {
+            open = Math.max(open, consumed[i]);
+        }
+        return open;
+    }
+    
+    @Override
+    public void reset() {
+        candidates = 0;
+        prefixLength = 0;
+    }
+    
+    private static int prefixLength(long classes) {
+        if ((classes & 0x3F) == (CardScanner.LETTER << 4 | CardScanner.LETTER << 2 | CardScanner.DIGIT)) {
+            return 3;
+        }
+        if ((classes & 0xF) == (CardScanner.LETTER << 2 | CardScanner.LETTER)) {
+            return 2;
+        }
+        return (classes & 0x3) == CardScanner.LETTER ? 1 : 0;
+    }
+    
+    private void start() {
+        int length = LENGTH_BY_COUNTRY[country(lastCharacters[0], lastCharacters[1])];
+        if (length == 0 || candidates == MAX_CANDIDATES) {
+            return;
+        }
+        int i = candidates++;
+        consumed[i] = GROUP_LENGTH;
+        alphanumerics[i] = GROUP_LENGTH;
+        expected[i] = length;
+        remainder[i] = 0;
+        prefix[i] = ((value(lastCharacters[0]) * 100 + value(lastCharacters[1])) * 10 + value(lastCharacters[2])) * 10
+                + value(lastCharacters[3]);
+        grouped[i] = false;
+        afterSpace[i] = false;
+    }
+    
+    /**
+     * @return the length of the IBAN if this character completed a valid one, -1 if the candidate is over, 0 if it
+     *         goes on
+     */
+    private int advance(int i, char c, int characterClass) {
+        if (c == ' ') {
+            boolean endOfGroup = alphanumerics[i] % GROUP_LENGTH == 0 && !afterSpace[i];
+            if (!endOfGroup || (!grouped[i] && alphanumerics[i] > GROUP_LENGTH)) {
+                return -1;
+            }
+            grouped[i] = true;
+            afterSpace[i] = true;
+            consumed[i]++;
+            return 0;
+        }
+        if (characterClass != CardScanner.DIGIT && characterClass != CardScanner.LETTER) {
+            return -1;
+        }
+        if (grouped[i] && alphanumerics[i] % GROUP_LENGTH == 0 && !afterSpace[i]) {
+            return -1;
+        }
+        afterSpace[i] = false;
+        consumed[i]++;
+        alphanumerics[i]++;
+        remainder[i] = append(remainder[i], c);
+        if (alphanumerics[i] < expected[i]) {
+            return 0;
+        }
+        return (remainder[i] * 1000000 + prefix[i]) % 97 == 1 ? consumed[i] : -1;
+    }
+    
+    private void remove(int i) {
+        candidates--;
+        consumed[i] = consumed[candidates];
+        alphanumerics[i] = alphanumerics[candidates];
+        expected[i] = expected[candidates];
+        remainder[i] = remainder[candidates];
+        prefix[i] = prefix[candidates];
+        grouped[i] = grouped[candidates];
+        afterSpace[i] = afterSpace[candidates];
+    }
+}
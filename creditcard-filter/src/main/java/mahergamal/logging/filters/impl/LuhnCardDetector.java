@@ -0,0 +1,85 @@
+package mahergamal.logging.filters.impl;
+
+import mahergamal.cryptography.DigitChecksum;
+import mahergamal.logging.filters.CardScanner;
+import mahergamal.logging.filters.Detector;
+
+/**
+ * Credit cards, with the same rules as the patterns of the filter : 14 to 16 consecutive digits, or 4 groups of 4
+ * digits separated by a space or a hyphen, that pass the checksum.
+ */
+public class LuhnCardDetector implements Detector {
+    
+    private static final int MIN_DIGITS = 14;
+    private static final int MAX_DIGITS = 16;
+    private static final int GROUPED_LENGTH = 19;
+    
+    /** The classes of a grouped card, 2 bits per character. */
+    private static final long GROUPED_CLASSES;
+    private static final long GROUPED_MASK = (1L << (2 * GROUPED_LENGTH)) - 1;
+    
+    static {
+        long classes = 0;
+        for (int i = 0; i < GROUPED_LENGTH; i++) {
+            classes = (classes << 2) | (i % 5 == 4 ? CardScanner.DELIMITER : CardScanner.DIGIT);
+        }
+        GROUPED_CLASSES = classes;
+    }
+    
+    private final DigitChecksum checksum;
+    /** The last 16 digits, stored twice so any window of them is contiguous. */
+    private final byte[] digits = new byte[2 * MAX_DIGITS];
+    private int digitCount;
+    private int digitRun;
+    private int openLength;
+    
+    public LuhnCardDetector(DigitChecksum checksum) {
+        this.checksum = checksum;
+    }
+    
+    @Override
+    public int maxLength() {
+        return GROUPED_LENGTH;
+    }
+    
+    @Override
+    public int accept(char c, int characterClass, long classes) {
+        if (characterClass != CardScanner.DIGIT) {
+            digitRun = 0;
+            // Cards start with a digit, delimiters before the first one can go.
+            openLength = characterClass == CardScanner.DELIMITER && openLength > 0 ? Math.min(openLength + 1,
+                    GROUPED_LENGTH - 1) : 0;
+            return 0;
+        }
+        openLength = Math.min(openLength + 1, GROUPED_LENGTH - 1);
+        
+        int newest = digitCount & (MAX_DIGITS - 1);
+        digits[newest] = (byte) (c - '0');
+        digits[newest + MAX_DIGITS] = (byte) (c - '0');
+        digitCount++;
+        if (digitRun < MAX_DIGITS) {
+            digitRun++;
+        }
+        
+        for (int length = digitRun; length >= MIN_DIGITS; length--) {
+            if (checksum.isValid(digits, newest + MAX_DIGITS - length + 1, length)) {
+                return length;
+            }
+        }
+        if ((classes & GROUPED_MASK) == GROUPED_CLASSES && checksum.isValid(digits, newest + 1, MAX_DIGITS)) {
+            return GROUPED_LENGTH;
+        }
+        return 0;
+    }
+    
+    @Override
+    public int openLength() {
+        return openLength;
+    }
+    
+    @Override
+    public void reset() {
+        digitRun = 0;
+        openLength = 0;
+    }
+}
@@ -0,0 +1,15 @@
+package mahergamal.logging.filters.impl;
+
+import java.io.IOException;
+
+/**
+ * Flushes after every line, for interactive pipes like <code>tail -f</code> where latency matters more than the
+ * number of write calls.
+ */
+public class PerLineFlushPolicy extends AbstractFlushPolicy {
+    
+    @Override
+    protected void afterLineWritten(long pendingBytes) throws IOException {
+        flush();
+    }
+}
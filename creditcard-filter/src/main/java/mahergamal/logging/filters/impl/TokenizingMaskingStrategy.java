@@ -0,0 +1,42 @@
+package mahergamal.logging.filters.impl;
+
+import mahergamal.cryptography.impl.HmacDigitTokenizer;
+import mahergamal.logging.filters.MaskingStrategy;
+
+/**
+ * Replaces the digits of a card with a stable token of the same length, so the same card can still be correlated
+ * across log lines without being revealed. Delimiters stay where they were.
+ * <p>
+ * Only the digits of the span the filter flagged are replaced, so a card gets the same token whatever surrounds it.
+ * No card sized run of a token passes the Luhn check, but digits right next to the span are left as they were.
+ */
+public class TokenizingMaskingStrategy implements MaskingStrategy {
+    
+    private final HmacDigitTokenizer tokenizer;
+    
+    public TokenizingMaskingStrategy(HmacDigitTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+    
+    @Override
+    public void mask(StringBuilder text, int start, int end) {
+        char[] digits = new char[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                digits[length++] = c;
+            }
+        }
+        tokenizer.tokenize(digits, length);
+        for (int i = start, j = 0; i < end; i++) {
+            if (isDigit(text.charAt(i))) {
+                text.setCharAt(i, digits[j++]);
+            }
+        }
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
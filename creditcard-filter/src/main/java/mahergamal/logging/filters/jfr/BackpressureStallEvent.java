@@ -0,0 +1,26 @@
+package mahergamal.logging.filters.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Writing the filtered output to the underlying stream blocked, most likely because whoever reads it can't keep up.
+ * Recorded around the writes of the batches the flush policy lets go of, the ones that can block.
+ */
+@Name("mahergamal.filter.BackpressureStall")
+@Label("Backpressure Stall")
+@Category("Credit Card Filter")
+@Description("Writing the filtered output blocked on the underlying stream")
+@Enabled(false)
+@StackTrace(false)
+public class BackpressureStallEvent extends jdk.jfr.Event {
+    
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    public int bytes;
+}
@@ -0,0 +1,30 @@
+package mahergamal.logging.filters.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A credit card was found. Only its shape is recorded, never its digits.
+ */
+@Name("mahergamal.filter.CardMasked")
+@Label("Card Masked")
+@Category("Credit Card Filter")
+@Description("A credit card was detected and masked")
+@Enabled(false)
+@StackTrace(false)
+public class CardMaskedEvent extends jdk.jfr.Event {
+    
+    public static final String CONTIGUOUS = "contiguous";
+    public static final String GROUPED = "grouped";
+    
+    @Label("Digits")
+    public int digits;
+    
+    @Label("Layout")
+    @Description("Either contiguous digits or groups of 4 digits separated by delimiters")
+    public String layout;
+}
@@ -0,0 +1,31 @@
+package mahergamal.logging.filters.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A chunk of input went through the detection patterns.
+ */
+@Name("mahergamal.filter.ChunkScanned")
+@Label("Chunk Scanned")
+@Category("Credit Card Filter")
+@Description("A chunk of input was scanned for credit cards")
+@Enabled(false)
+@StackTrace(false)
+public class ChunkScannedEvent extends jdk.jfr.Event {
+    
+    @Label("Characters")
+    public int characters;
+    
+    @Label("Candidates")
+    @Description("Digit sequences that matched a card layout and went through the checksum")
+    public int candidates;
+    
+    @Label("Cards")
+    @Description("Candidates that passed the checksum")
+    public int cards;
+}
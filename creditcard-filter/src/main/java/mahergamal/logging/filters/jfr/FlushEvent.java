@@ -0,0 +1,28 @@
+package mahergamal.logging.filters.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The filtered output was flushed to the underlying stream. Flushes from the latency timer happen on its own thread.
+ */
+@Name("mahergamal.filter.Flush")
+@Label("Output Flush")
+@Category("Credit Card Filter")
+@Description("The filtered output was flushed by the flush policy")
+@Enabled(false)
+@StackTrace(false)
+public class FlushEvent extends jdk.jfr.Event {
+    
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+    
+    @Label("Policy")
+    public String policy;
+}
@@ -0,0 +1,36 @@
+package mahergamal.logging.filters.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The adaptive filter switched execution mode at a chunk boundary.
+ */
+@Name("mahergamal.filter.ModeSwitch")
+@Label("Execution Mode Switch")
+@Category("Credit Card Filter")
+@Description("The adaptive filter changed the way it masks chunks")
+@Enabled(false)
+@StackTrace(false)
+public class ModeSwitchEvent extends jdk.jfr.Event {
+    
+    @Label("From")
+    public String from;
+    
+    @Label("To")
+    public String to;
+    
+    @Label("Reason")
+    public String reason;
+    
+    @Label("Input Rate")
+    @DataAmount(DataAmount.BYTES)
+    @Frequency
+    public double bytesPerSecond;
+}
@@ -0,0 +1,49 @@
+package mahergamal.cryptography.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class SwarLuhnChecksumTest extends TestCase {
+    
+    private SwarLuhnChecksum swar = new SwarLuhnChecksum();
+    private LuhnDigitChecksum scalar = new LuhnDigitChecksum();
+    
+    public void testAgreesWithTheScalarChecksum() {
+        Random random = new Random(7);
+        byte[] digits = new byte[64];
+        for (int round = 0; round < 2000; round++) {
+            for (int i = 0; i < digits.length; i++) {
+                digits[i] = (byte) random.nextInt(10);
+            }
+            int length = 1 + random.nextInt(40);
+            int offset = random.nextInt(digits.length - length + 1);
+            assertEquals(scalar.isValid(digits, offset, length), swar.isValid(digits, offset, length));
+            
+            int count = digits.length - length - offset + 1;
+            boolean[] valid = new boolean[count];
+            swar.validateWindows(digits, offset, count, length, valid);
+            for (int i = 0; i < count; i++) {
+                assertEquals(scalar.isValid(digits, offset + i, length), valid[i]);
+            }
+        }
+    }
+    
+    public void testValidatesEveryWindowOfARun() {
+        byte[] digits = decode("00005661395993253700");
+        boolean[] valid = new boolean[7];
+        assertEquals(1, swar.validateWindows(digits, 0, 7, 14, valid));
+        assertTrue(valid[4]);
+        for (int i = 0; i < 7; i++) {
+            assertEquals(scalar.isValid(digits, i, 14), valid[i]);
+        }
+    }
+    
+    private static byte[] decode(String number) {
+        byte[] digits = new byte[number.length()];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = (byte) (number.charAt(i) - '0');
+        }
+        return digits;
+    }
+}
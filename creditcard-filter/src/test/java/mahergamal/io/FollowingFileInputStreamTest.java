@@ -0,0 +1,100 @@
+package mahergamal.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import junit.framework.TestCase;
+
+public class FollowingFileInputStreamTest extends TestCase {
+    
+    private File directory;
+    private File file;
+    
+    @Override
+    protected void setUp() throws IOException {
+        directory = File.createTempFile("follow", "");
+        directory.delete();
+        directory.mkdir();
+        file = new File(directory, "app.log");
+    }
+    
+    @Override
+    protected void tearDown() {
+        for (File child : directory.listFiles()) {
+            child.delete();
+        }
+        directory.delete();
+    }
+    
+    public void testReadsOnlyAppendedBytes() throws IOException {
+        append(file, "old\n");
+        InputStream in = new FollowingFileInputStream(file.toPath(), false);
+        append(file, "new\n");
+        assertEquals("new\n", read(in, 4));
+        in.close();
+    }
+    
+    public void testWaitsForAppends() throws Exception {
+        append(file, "first\n");
+        InputStream in = new FollowingFileInputStream(file.toPath(), true);
+        assertEquals("first\n", read(in, 6));
+        appendLater(file, "second\n");
+        assertEquals("second\n", read(in, 7));
+        in.close();
+    }
+    
+    public void testRestartsAfterTruncation() throws Exception {
+        append(file, "before truncation\n");
+        InputStream in = new FollowingFileInputStream(file.toPath(), true);
+        assertEquals("before truncation\n", read(in, 18));
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(0);
+        truncated.close();
+        appendLater(file, "after\n");
+        assertEquals("after\n", read(in, 6));
+        in.close();
+    }
+    
+    public void testSwitchesToTheRotatedFile() throws Exception {
+        append(file, "old file\n");
+        InputStream in = new FollowingFileInputStream(file.toPath(), true);
+        assertEquals("old file\n", read(in, 9));
+        assertTrue(file.renameTo(new File(directory, "app.log.1")));
+        appendLater(file, "new file\n");
+        assertEquals("new file\n", read(in, 9));
+        in.close();
+    }
+    
+    private static String read(InputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            read += in.read(bytes, read, length - read);
+        }
+        return new String(bytes, "US-ASCII");
+    }
+    
+    private static void append(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file, true);
+        out.write(text.getBytes("US-ASCII"));
+        out.close();
+    }
+    
+    private static void appendLater(final File file, final String text) {
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    append(file, text);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }.start();
+    }
+}
@@ -0,0 +1,78 @@
+package mahergamal.logging.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class AdaptiveCreditCardFilterTest extends TestCase {
+    
+    private static String input;
+    private static String expected;
+    
+    @Override
+    protected void setUp() throws IOException {
+        if (input == null) {
+            Random random = new Random(42);
+            StringBuilder lines = new StringBuilder();
+            while (lines.length() < 300000) {
+                lines.append(CardSamples.randomLines(random));
+            }
+            input = lines.toString();
+            expected = ChecksumBasedCreditCardFilterTest.filter(input);
+        }
+    }
+    
+    public void testSequential() throws IOException {
+        assertEquals(expected, filter(new ExecutionModeSelector(0, Long.MAX_VALUE, Long.MAX_VALUE, 1, 0, 4)));
+    }
+    
+    public void testPipelined() throws IOException {
+        assertEquals(expected, filter(new ExecutionModeSelector(0, 0, Long.MAX_VALUE, 1, 0, 4)));
+    }
+    
+    public void testParallel() throws IOException {
+        assertEquals(expected, filter(new ExecutionModeSelector(0, 0, 0, 0, Long.MAX_VALUE, 4)));
+    }
+    
+    public void testSwitchesAtEveryChunkWithoutChangingTheOutput() throws IOException {
+        ExecutionModeSelector selector = new ExecutionModeSelector(0, 0, 0, 0, Long.MAX_VALUE, 4) {
+            private int windows;
+            
+            @Override
+            public ExecutionMode select(ExecutionMode current, double bytesPerSecond, double averageLineLength,
+                    double candidateDensity, boolean backlogged) {
+                return ExecutionMode.values()[++windows % 3];
+            }
+            
+            @Override
+            public String getReason() {
+                return "window " + windows;
+            }
+        };
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AdaptiveCreditCardFilter filter = new AdaptiveCreditCardFilter(new ByteArrayInputStream(
+                input.getBytes("US-ASCII")), output, CardSamples.cardEngine(), selector);
+        filter.run();
+        assertEquals(expected, output.toString("US-ASCII"));
+        assertTrue(filter.getModeSwitches() > 3);
+        assertEquals("window " + filter.getModeSwitches(), filter.getLastSwitchReason());
+        assertEquals(input.length(), filter.getBytesRead());
+    }
+    
+    public void testHoldsLinesBackUntilTheirLineBreak() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new AdaptiveCreditCardFilter(new ByteArrayInputStream("4111 1111 1111 1111".getBytes("US-ASCII")), output,
+                CardSamples.cardEngine(), new ExecutionModeSelector(0, 0, 0, 0, Long.MAX_VALUE, 4)).run();
+        assertEquals("XXXX XXXX XXXX XXXX", output.toString("US-ASCII"));
+    }
+    
+    private String filter(ExecutionModeSelector selector) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new AdaptiveCreditCardFilter(new ByteArrayInputStream(input.getBytes("US-ASCII")), output,
+                CardSamples.cardEngine(), selector).run();
+        return output.toString("US-ASCII");
+    }
+}
@@ -0,0 +1,67 @@
+package mahergamal.logging.filters;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import mahergamal.cryptography.impl.LuhnDigitChecksum;
+
+/**
+ * Random log lines, valid card numbers and a card masking engine, shared by the tests of the filters.
+ */
+final class CardSamples {
+    
+    private CardSamples() {
+        
+    }
+    
+    static String randomLines(Random random) {
+        StringBuilder input = new StringBuilder();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            for (int j = random.nextInt(6); j >= 0; j--) {
+                switch (random.nextInt(4)) {
+                case 0:
+                    input.append(validNumber(random, 14 + random.nextInt(3)));
+                    break;
+                case 1:
+                    String number = validNumber(random, 16);
+                    char delimiter = random.nextBoolean() ? ' ' : '-';
+                    for (int group = 0; group < 4; group++) {
+                        input.append(number, group * 4, group * 4 + 4).append(group < 3 ? delimiter : "");
+                    }
+                    break;
+                case 2:
+                    input.append(random.nextInt(1000000));
+                    break;
+                default:
+                    input.append(random.nextBoolean() ? " " : random.nextBoolean() ? "-" : "text");
+                }
+            }
+            input.append('\n');
+        }
+        return input.toString();
+    }
+    
+    static String validNumber(Random random, int length) {
+        int[] digits = new int[length];
+        int sum = 0;
+        for (int i = length - 2; i >= 0; i--) {
+            digits[i] = random.nextInt(10);
+            int value = (length - 1 - i) % 2 == 1 ? digits[i] * 2 : digits[i];
+            sum += value > 9 ? value - 9 : value;
+        }
+        digits[length - 1] = (10 - sum % 10) % 10;
+        StringBuilder number = new StringBuilder();
+        for (int digit : digits) {
+            number.append(digit);
+        }
+        return number.toString();
+    }
+    
+    static MaskingEngine cardEngine() {
+        return new MaskingEngine(new Supplier<CardScanner>() {
+            public CardScanner get() {
+                return new CardScanner(new LuhnDigitChecksum(), 'X');
+            }
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package mahergamal.logging.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import mahergamal.cryptography.impl.HmacDigitTokenizer;
+import mahergamal.cryptography.impl.LuhnChecksum;
+import mahergamal.cryptography.impl.TokenDictionary;
+import mahergamal.logging.filters.impl.PerLineFlushPolicy;
+import mahergamal.logging.filters.impl.TokenizingMaskingStrategy;
+
+public class ChecksumBasedCreditCardFilterTest extends TestCase {
+    
+    public void testMasksCardsAndKeepsEverythingElse() throws UnsupportedEncodingException {
+        assertEquals("LF only ->\n<- LF only\n", filter("LF only ->\n<- LF only\n"));
+        assertEquals("XXXXXXXXXXXXXX\n", filter("56613959932537\n"));
+        assertEquals("12XXXXXXXXXXXXXX\n", filter("1256613959932537\n"));
+        assertEquals("987XXXXXXXXXXXXXXXX321\n", filter("9875610591081018250321\n"));
+        assertEquals("card XXXX-XXXX-XXXX-XXXX.\n", filter("card 4111-1111-1111-1111.\n"));
+        assertEquals("4111 1111 1111 111 doesn't have enough digits.\n",
+                filter("4111 1111 1111 111 doesn't have enough digits.\n"));
+    }
+    
+    public void testNeverMasksItsOwnTokensAgain() throws UnsupportedEncodingException {
+        TokenizingMaskingStrategy strategy = new TokenizingMaskingStrategy(new HmacDigitTokenizer(
+                "secret".getBytes("UTF-8"), new TokenDictionary(1024)));
+        Random random = new Random(28);
+        for (int i = 0; i < 500; i++) {
+            String input = flaggedNumbers(random);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            new ChecksumBasedCreditCardFilter(new ByteArrayInputStream(input.getBytes("US-ASCII")), output,
+                    LuhnChecksum.class, new PerLineFlushPolicy(), strategy).run();
+            String tokenized = output.toString("US-ASCII");
+            assertEquals(input, tokenized, filter(tokenized));
+        }
+    }
+    
+    /**
+     * Numbers the filter flags as a whole, merged ones included, each kept apart from the others by text : a token
+     * only changes the digits of the span it replaces.
+     */
+    private static String flaggedNumbers(Random random) {
+        StringBuilder line = new StringBuilder("paid");
+        for (int i = random.nextInt(6); i >= 0; i--) {
+            line.append(random.nextBoolean() ? " with " : ", ");
+            switch (random.nextInt(3)) {
+            case 0:
+                line.append(CardSamples.validNumber(random, 14 + random.nextInt(3)));
+                break;
+            case 1:
+                // A 14 digit card inside a 16 digit one, the two get merged.
+                String nested = random.nextInt(10) + "0" + CardSamples.validNumber(random, 14);
+                for (char c = '1'; !new LuhnChecksum(nested).isValid(); c++) {
+                    nested = nested.charAt(0) + String.valueOf(c) + nested.substring(2);
+                }
+                line.append(nested);
+                break;
+            default:
+                StringBuilder overlapping = new StringBuilder(CardSamples.validNumber(random, 16));
+                for (int length = 17 + random.nextInt(30); overlapping.length() < length;) {
+                    overlapping.append(passingWith(overlapping.substring(overlapping.length() - 15)).charAt(15));
+                }
+                line.append(overlapping);
+            }
+        }
+        return line.append('\n').toString();
+    }
+    
+    /**
+     * @return the digits followed by the one digit that makes them pass the Luhn check
+     */
+    private static String passingWith(String digits) {
+        for (char c = '0';; c++) {
+            if (new LuhnChecksum(digits + c).isValid()) {
+                return digits + c;
+            }
+        }
+    }
+    
+    static String filter(String input) throws UnsupportedEncodingException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayInputStream in = new ByteArrayInputStream(input.getBytes("US-ASCII"));
+        new ChecksumBasedCreditCardFilter(in, output, LuhnChecksum.class).run();
+        return output.toString("US-ASCII");
+    }
+}
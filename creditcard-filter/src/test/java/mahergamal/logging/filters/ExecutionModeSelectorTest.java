@@ -0,0 +1,52 @@
+package mahergamal.logging.filters;
+
+import junit.framework.TestCase;
+
+public class ExecutionModeSelectorTest extends TestCase {
+    
+    private static final double MB = 1024 * 1024;
+    
+    private ExecutionModeSelector selector = new ExecutionModeSelector(250, (long) MB, (long) (16 * MB), 0.4, 16384,
+            4);
+    
+    public void testStaysSequentialForSlowInput() {
+        assertEquals(ExecutionMode.SEQUENTIAL, selector.select(ExecutionMode.SEQUENTIAL, 0.5 * MB, 80, 0.9, false));
+        assertEquals("started", selector.getReason());
+    }
+    
+    public void testPipelinesThenGoesParallelAsTheRateGrows() {
+        assertEquals(ExecutionMode.PIPELINED, selector.select(ExecutionMode.SEQUENTIAL, 2 * MB, 80, 0.1, false));
+        assertEquals("input rate 2.00 MB/s >= 1.00 MB/s", selector.getReason());
+        assertEquals(ExecutionMode.PARALLEL, selector.select(ExecutionMode.PIPELINED, 20 * MB, 80, 0.1, false));
+        assertEquals("input rate 20.00 MB/s >= 16.00 MB/s", selector.getReason());
+    }
+    
+    public void testGoesParallelSoonerForDigitHeavyInput() {
+        assertEquals(ExecutionMode.PARALLEL, selector.select(ExecutionMode.SEQUENTIAL, 2 * MB, 80, 0.5, false));
+        assertEquals("candidate density 50.0% >= 40.0%", selector.getReason());
+    }
+    
+    public void testLongLinesAreNotWorthParallelizing() {
+        assertEquals(ExecutionMode.PIPELINED, selector.select(ExecutionMode.SEQUENTIAL, 20 * MB, 100000, 0.1, false));
+        assertEquals(ExecutionMode.PIPELINED, selector.select(ExecutionMode.PARALLEL, 20 * MB, 100000, 0.1, false));
+        assertEquals("lines average 100000 bytes > 16384 bytes", selector.getReason());
+    }
+    
+    public void testOnlyLeavesAModeOnceTheRateHalved() {
+        assertEquals(ExecutionMode.PARALLEL, selector.select(ExecutionMode.PARALLEL, 10 * MB, 80, 0.1, false));
+        assertEquals(ExecutionMode.PIPELINED, selector.select(ExecutionMode.PARALLEL, 7 * MB, 80, 0.1, false));
+        assertEquals(ExecutionMode.PIPELINED, selector.select(ExecutionMode.PIPELINED, 0.6 * MB, 80, 0.1, false));
+        assertEquals(ExecutionMode.SEQUENTIAL, selector.select(ExecutionMode.PIPELINED, 0.4 * MB, 80, 0.1, false));
+        assertEquals("input rate 0.40 MB/s < 0.50 MB/s", selector.getReason());
+    }
+    
+    public void testStaysPutWhileTheInputIsBacklogged() {
+        assertEquals(ExecutionMode.PIPELINED, selector.select(ExecutionMode.PIPELINED, 0.2 * MB, 80, 0.1, true));
+        assertEquals(ExecutionMode.PARALLEL, selector.select(ExecutionMode.PARALLEL, 0.2 * MB, 80, 0.1, true));
+    }
+    
+    public void testNeverGoesParallelOnASingleProcessor() {
+        ExecutionModeSelector single = new ExecutionModeSelector(250, (long) MB, (long) (16 * MB), 0.4, 16384, 1);
+        assertEquals(ExecutionMode.PIPELINED, single.select(ExecutionMode.SEQUENTIAL, 20 * MB, 80, 0.9, false));
+    }
+}
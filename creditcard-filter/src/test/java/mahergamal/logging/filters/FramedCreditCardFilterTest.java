@@ -0,0 +1,68 @@
+package mahergamal.logging.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import mahergamal.cryptography.impl.LuhnDigitChecksum;
+
+public class FramedCreditCardFilterTest extends TestCase {
+    
+    public void testMasksEachRecordAndKeepsTheFraming() throws IOException {
+        List<String> records = filter(256, "at 4111 1111 1111 1111\n\tat line 2", "", "56613959932537");
+        assertEquals(3, records.size());
+        assertEquals("at XXXX XXXX XXXX XXXX\n\tat line 2", records.get(0));
+        assertEquals("", records.get(1));
+        assertEquals("XXXXXXXXXXXXXX", records.get(2));
+    }
+    
+    public void testCardsDoNotSpanRecords() throws IOException {
+        List<String> records = filter(256, "4111 1111", " 1111 1111");
+        assertEquals("4111 1111", records.get(0));
+        assertEquals(" 1111 1111", records.get(1));
+    }
+    
+    public void testContiguousDigitsDoNotSpanRecords() throws IOException {
+        List<String> records = filter(256, "order 41111111", "11111111 shipped");
+        assertEquals("order 41111111", records.get(0));
+        assertEquals("11111111 shipped", records.get(1));
+    }
+    
+    public void testRecordsLargerThanTheBuffer() throws IOException {
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 200000) {
+            large.append("card 4111-1111-1111-1111 ");
+        }
+        List<String> records = filter(1000000, large.toString(), "tail");
+        assertEquals(large.toString().replace("4111-1111-1111-1111", "XXXX-XXXX-XXXX-XXXX"), records.get(0));
+        assertEquals("tail", records.get(1));
+    }
+    
+    private static List<String> filter(int maxRecordLength, String... records) throws IOException {
+        ByteArrayOutputStream framed = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(framed);
+        for (String record : records) {
+            byte[] bytes = record.getBytes("US-ASCII");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        ByteArrayOutputStream filtered = new ByteArrayOutputStream();
+        new FramedCreditCardFilter(Channels.newChannel(new ByteArrayInputStream(framed.toByteArray())),
+                Channels.newChannel(filtered), maxRecordLength, new CardScanner(new LuhnDigitChecksum(), 'X')).run();
+        
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(filtered.toByteArray()));
+        List<String> results = new ArrayList<String>();
+        while (in.available() > 0) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            results.add(new String(bytes, "US-ASCII"));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,103 @@
+package mahergamal.logging.filters;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+public class MaskingEngineTest extends TestCase {
+    
+    private MaskingEngine engine = CardSamples.cardEngine();
+    
+    public void testRecordsOneEventPerMaskedCard() throws Exception {
+        Path file = Files.createTempFile("cards", ".jfr");
+        Recording recording = new Recording();
+        try {
+            recording.enable("mahergamal.filter.CardMasked");
+            recording.start();
+            assertEquals("a XXXXXXXXXXXXXXXX b XXXX-XXXX-XXXX-XXXX c 987XXXXXXXXXXXXXXXX321\n",
+                    engine.mask("a 4111111111111111 b 4111-1111-1111-1111 c 9875610591081018250321\n"));
+            recording.stop();
+            recording.dump(file);
+            List<String> cards = new ArrayList<String>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                cards.add(event.getInt("digits") + " " + event.getString("layout"));
+            }
+            assertEquals("[16 contiguous, 16 grouped, 16 contiguous]", cards.toString());
+        } finally {
+            recording.close();
+            Files.delete(file);
+        }
+    }
+    
+    public void testMasksEveryFlavorLikeTheFilter() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            String input = CardSamples.randomLines(random);
+            String expected = ChecksumBasedCreditCardFilterTest.filter(input);
+            assertEquals(input, expected, engine.mask(input));
+            
+            byte[] bytes = ("<" + input).getBytes("US-ASCII");
+            byte[] output = new byte[input.length()];
+            assertEquals(input.length(), engine.mask(bytes, 1, input.length(), output));
+            assertEquals(input, expected, new String(output, "US-ASCII"));
+            
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).position(1);
+            engine.mask(direct);
+            assertEquals(1, direct.position());
+            direct.get(output);
+            assertEquals(input, expected, new String(output, "US-ASCII"));
+            
+            engine.mask(bytes, 1, input.length(), bytes);
+            assertEquals(input, expected, new String(bytes, 0, input.length(), "US-ASCII"));
+        }
+    }
+    
+    public void testReturnsTheSameStringWhenThereIsNothingToMask() {
+        String input = "nothing to see here 1234";
+        assertSame(input, engine.mask(input));
+    }
+    
+    public void testCallsDoNotShareState() {
+        assertEquals("4111 1111", engine.mask("4111 1111"));
+        assertEquals(" 1111 1111", engine.mask(" 1111 1111"));
+        assertEquals("XXXX XXXX XXXX XXXX", engine.mask("4111 1111 1111 1111"));
+    }
+    
+    public void testIsSafeToShareBetweenThreads() throws Exception {
+        final MaskingEngine shared = CardSamples.cardEngine();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (int t = 0; t < 8; t++) {
+                final Random random = new Random(t);
+                results.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 300; i++) {
+                            String input = CardSamples.randomLines(random);
+                            assertEquals(input, ChecksumBasedCreditCardFilterTest.filter(input), shared.mask(input));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
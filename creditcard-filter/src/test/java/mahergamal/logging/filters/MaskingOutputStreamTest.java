@@ -0,0 +1,92 @@
+package mahergamal.logging.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class MaskingOutputStreamTest extends TestCase {
+    
+    private Random random = new Random(42);
+    
+    public void testMasksLikeTheFilter() throws IOException {
+        for (int i = 0; i < 200; i++) {
+            String input = CardSamples.randomLines(random);
+            String expected = ChecksumBasedCreditCardFilterTest.filter(input);
+            assertEquals(input, expected, maskInChunks(input));
+            assertEquals(input, expected, maskCharacters(input));
+        }
+    }
+    
+    public void testHoldsBackOnlyTheUndecidedTail() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputStream masking = new MaskingOutputStream(output);
+        masking.write("card: 4111111111111".getBytes("US-ASCII"));
+        assertEquals("card: ", output.toString("US-ASCII"));
+        masking.write("111 done".getBytes("US-ASCII"));
+        assertEquals("card: XXXXXXXXXXXXXXXX done", output.toString("US-ASCII"));
+        masking.write("1234".getBytes("US-ASCII"));
+        masking.flush();
+        assertEquals("card: XXXXXXXXXXXXXXXX done", output.toString("US-ASCII"));
+        masking.close();
+        assertEquals("card: XXXXXXXXXXXXXXXX done1234", output.toString("US-ASCII"));
+    }
+    
+    public void testFlushKeepsACardSplitAroundItHeldBack() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputStream masking = new MaskingOutputStream(output);
+        masking.write("card: 4111-1111".getBytes("US-ASCII"));
+        masking.flush();
+        assertEquals("card: ", output.toString("US-ASCII"));
+        masking.write("-1111-1111 done\n".getBytes("US-ASCII"));
+        masking.flush();
+        assertEquals("card: XXXX-XXXX-XXXX-XXXX done\n", output.toString("US-ASCII"));
+    }
+    
+    public void testWriterFlushKeepsACardSplitAroundItHeldBack() throws IOException {
+        StringWriter output = new StringWriter();
+        Writer masking = new MaskingWriter(output);
+        masking.write("card: 4111-1111");
+        masking.flush();
+        assertEquals("card: ", output.toString());
+        masking.write("-1111-1111 done\n");
+        masking.flush();
+        assertEquals("card: XXXX-XXXX-XXXX-XXXX done\n", output.toString());
+        masking.write("1234");
+        masking.close();
+        assertEquals("card: XXXX-XXXX-XXXX-XXXX done\n1234", output.toString());
+    }
+    
+    private String maskInChunks(String input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputStream masking = new MaskingOutputStream(output);
+        byte[] bytes = input.getBytes("US-ASCII");
+        for (int off = 0; off < bytes.length;) {
+            int len = Math.min(bytes.length - off, random.nextInt(40));
+            if (len == 1) {
+                masking.write(bytes[off]);
+            } else {
+                masking.write(bytes, off, len);
+            }
+            off += len;
+        }
+        masking.close();
+        return output.toString("US-ASCII");
+    }
+    
+    private String maskCharacters(String input) throws IOException {
+        StringWriter output = new StringWriter();
+        Writer masking = new MaskingWriter(output);
+        for (int off = 0; off < input.length();) {
+            int len = Math.min(input.length() - off, random.nextInt(40));
+            masking.write(input, off, len);
+            off += len;
+        }
+        masking.close();
+        return output.toString();
+    }
+}
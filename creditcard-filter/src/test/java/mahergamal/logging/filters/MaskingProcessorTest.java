@@ -0,0 +1,135 @@
+package mahergamal.logging.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class MaskingProcessorTest extends TestCase {
+    
+    public void testMasksCardsSpanningChunks() throws Exception {
+        String masked = process(1, "paid with 4111 11", "11 1111 1111, order ", "12345\n");
+        assertEquals("paid with XXXX XXXX XXXX XXXX, order 12345\n", masked);
+    }
+    
+    public void testPassesChunksWithoutCandidatesThrough() throws Exception {
+        MaskingProcessor processor = new MaskingProcessor();
+        CollectingSubscriber subscriber = new CollectingSubscriber(1);
+        processor.subscribe(subscriber);
+        SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>();
+        publisher.subscribe(processor);
+        ByteBuffer chunk = ByteBuffer.wrap("order 12345 shipped\n".getBytes("US-ASCII"));
+        publisher.submit(chunk);
+        publisher.close();
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertSame(chunk.array(), subscriber.first.array());
+    }
+    
+    public void testOnlyCopiesChunksWithSomethingToMask() throws Exception {
+        MaskingProcessor processor = new MaskingProcessor();
+        CollectingSubscriber subscriber = new CollectingSubscriber(1);
+        processor.subscribe(subscriber);
+        SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>();
+        publisher.subscribe(processor);
+        ByteBuffer first = ByteBuffer.wrap("paid with 4111 1111 1111 1111, ".getBytes("US-ASCII"));
+        ByteBuffer second = ByteBuffer.wrap("order 12345 shipped\n".getBytes("US-ASCII"));
+        publisher.submit(first);
+        publisher.submit(second);
+        publisher.close();
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertEquals("paid with XXXX XXXX XXXX XXXX, order 12345 shipped\n", subscriber.received.toString("US-ASCII"));
+        assertNotSame(first.array(), subscriber.first.array());
+        assertSame(second.array(), subscriber.last.array());
+    }
+    
+    public void testKeepsTheBytesLetGoOfBeforeACardInTheSameChunk() throws Exception {
+        assertEquals("9XXXXXXXXXXXXXXXXx\n", process(1, "94111111111111111x\n"));
+        assertEquals("ab 12 XXXXXXXXXXXXXXXX done\n", process(1, "ab 12 4111111111111111 done\n"));
+    }
+    
+    public void testMasksLikeTheFilterWhateverTheChunks() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            String input = CardSamples.randomLines(random);
+            List<String> chunks = new ArrayList<String>();
+            for (int off = 0; off < input.length();) {
+                int len = Math.min(input.length() - off, 1 + random.nextInt(200));
+                chunks.add(input.substring(off, off + len));
+                off += len;
+            }
+            assertEquals(input, ChecksumBasedCreditCardFilterTest.filter(input), process(4, chunks
+                    .toArray(new String[chunks.size()])));
+        }
+    }
+    
+    public void testNeverRunsAheadOfDemand() throws Exception {
+        String masked = process(1, "a", "b", "c", "56613959932537", "\n");
+        assertEquals("abcXXXXXXXXXXXXXX\n", masked);
+    }
+    
+    private static String process(long requestSize, String... chunks) throws Exception {
+        MaskingProcessor processor = new MaskingProcessor();
+        CollectingSubscriber subscriber = new CollectingSubscriber(requestSize);
+        processor.subscribe(subscriber);
+        SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>();
+        publisher.subscribe(processor);
+        for (String chunk : chunks) {
+            publisher.submit(ByteBuffer.wrap(chunk.getBytes("US-ASCII")));
+        }
+        publisher.close();
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        return subscriber.received.toString("US-ASCII");
+    }
+    
+    private static class CollectingSubscriber implements Flow.Subscriber<ByteBuffer> {
+        
+        private final long requestSize;
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Flow.Subscription subscription;
+        private ByteBuffer first;
+        private ByteBuffer last;
+        private Throwable error;
+        
+        CollectingSubscriber(long requestSize) {
+            this.requestSize = requestSize;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(requestSize);
+        }
+        
+        @Override
+        public void onNext(ByteBuffer item) {
+            if (first == null) {
+                first = item;
+            }
+            last = item;
+            byte[] bytes = new byte[item.remaining()];
+            item.duplicate().get(bytes);
+            received.write(bytes, 0, bytes.length);
+            subscription.request(1);
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+        
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
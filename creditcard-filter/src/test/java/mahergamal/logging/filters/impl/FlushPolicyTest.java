@@ -0,0 +1,98 @@
+package mahergamal.logging.filters.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class FlushPolicyTest extends TestCase {
+    
+    private CountingOutputStream output = new CountingOutputStream();
+    
+    public void testPerLineFlushesEveryLine() throws IOException {
+        PerLineFlushPolicy policy = new PerLineFlushPolicy();
+        policy.start(output);
+        policy.write(new byte[10]);
+        policy.write(new byte[20]);
+        policy.finish();
+        assertEquals(2, output.flushes);
+        assertEquals(2, policy.getFlushCount());
+        assertEquals(30, policy.getFlushedBytes());
+        assertEquals(20, policy.getLargestBatch());
+    }
+    
+    public void testBatchedFlushesOnceTheBatchIsFull() throws IOException {
+        BatchedFlushPolicy policy = new BatchedFlushPolicy(100, 60000);
+        policy.start(output);
+        policy.write(new byte[60]);
+        assertEquals(0, output.flushes);
+        policy.write(new byte[60]);
+        assertEquals(1, output.flushes);
+        policy.write(new byte[5]);
+        policy.finish();
+        policy.close();
+        assertEquals(2, output.flushes);
+        assertEquals(120, policy.getLargestBatch());
+    }
+    
+    public void testBatchedHoldsOnToWholeBatchesLargerThanAStreamBuffer() throws IOException {
+        BatchedFlushPolicy policy = new BatchedFlushPolicy(100000, 60000);
+        policy.start(output);
+        for (int i = 0; i < 20; i++) {
+            policy.write(new byte[1000]);
+        }
+        assertEquals(0, output.size());
+        policy.finish();
+        policy.close();
+        assertEquals(20000, output.size());
+        assertEquals(1, output.flushes);
+        assertEquals(20000, policy.getLargestBatch());
+    }
+    
+    public void testBatchedFlushesAfterTheMaximumLatency() throws Exception {
+        BatchedFlushPolicy policy = new BatchedFlushPolicy(100, 5);
+        policy.start(output);
+        policy.write(new byte[10]);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (output.flushes == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, policy.getFlushCount());
+        policy.finish();
+        policy.close();
+        assertEquals(1, policy.getFlushCount());
+    }
+    
+    public void testBatchedStopsItsTimerWhenClosedWithoutFinishing() throws Exception {
+        BatchedFlushPolicy policy = new BatchedFlushPolicy(100, 60000);
+        policy.start(output);
+        policy.write(new byte[10]);
+        assertTrue(timerRunning());
+        policy.close();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (timerRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertFalse(timerRunning());
+        assertEquals(0, output.flushes);
+    }
+    
+    private static boolean timerRunning() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("flush-timer") && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static class CountingOutputStream extends ByteArrayOutputStream {
+        
+        private volatile int flushes;
+        
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
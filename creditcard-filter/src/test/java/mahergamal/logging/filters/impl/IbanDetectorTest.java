@@ -0,0 +1,42 @@
+package mahergamal.logging.filters.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+import mahergamal.cryptography.impl.LuhnDigitChecksum;
+import mahergamal.logging.filters.CardScanner;
+import mahergamal.logging.filters.Detector;
+import mahergamal.logging.filters.MaskingWriter;
+
+public class IbanDetectorTest extends TestCase {
+    
+    public void testMasksTheDigitsOfValidIbans() throws IOException {
+        assertEquals("iban GBXX WEST XXXX XXXX XXXX XX.", mask("iban GB82 WEST 1234 5698 7654 32."));
+        assertEquals("DEXXXXXXXXXXXXXXXXXXXX", mask("DE89370400440532013000"));
+    }
+    
+    public void testLeavesInvalidIbansAlone() throws IOException {
+        assertEquals("GB83 WEST 1234 5698 7654 32", mask("GB83 WEST 1234 5698 7654 32", new IbanDetector()));
+        assertEquals("DE8937040044053201300", mask("DE8937040044053201300", new IbanDetector()));
+        assertEquals("GB82 WEST 12345698 7654 32", mask("GB82 WEST 12345698 7654 32", new IbanDetector()));
+    }
+    
+    public void testMasksCardsAndIbansInTheSamePass() throws IOException {
+        assertEquals("XXXX XXXX XXXX XXXX to DEXXXXXXXXXXXXXXXXXXXX",
+                mask("4111 1111 1111 1111 to DE89370400440532013000"));
+    }
+    
+    private String mask(String input) throws IOException {
+        return mask(input, new LuhnCardDetector(new LuhnDigitChecksum()), new IbanDetector());
+    }
+    
+    private String mask(String input, Detector... detectors) throws IOException {
+        StringWriter output = new StringWriter();
+        Writer masking = new MaskingWriter(output, new CardScanner('X', detectors));
+        masking.write(input);
+        masking.close();
+        return output.toString();
+    }
+}
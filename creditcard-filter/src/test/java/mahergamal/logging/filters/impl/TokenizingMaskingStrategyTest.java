@@ -0,0 +1,75 @@
+package mahergamal.logging.filters.impl;
+
+import java.io.UnsupportedEncodingException;
+
+import junit.framework.TestCase;
+import mahergamal.cryptography.impl.HmacDigitTokenizer;
+import mahergamal.cryptography.impl.LuhnChecksum;
+import mahergamal.cryptography.impl.TokenDictionary;
+
+public class TokenizingMaskingStrategyTest extends TestCase {
+    
+    private static final String CARD = "4111 1111 1111 1111";
+    
+    public void testTokensAreStableAndFormatPreserving() throws UnsupportedEncodingException {
+        String first = tokenize("paid with " + CARD, new TokenDictionary(1024));
+        String second = tokenize("paid with " + CARD, null);
+        assertEquals(first, second);
+        assertTrue(first.matches("paid with \\d{4} \\d{4} \\d{4} \\d{4}"));
+        assertFalse(first.equals("paid with " + CARD));
+        assertFalse(new LuhnChecksum(first).isValid());
+    }
+    
+    public void testDictionaryReturnsTheComputedTokens() throws UnsupportedEncodingException {
+        TokenDictionary dictionary = new TokenDictionary(16);
+        HmacDigitTokenizer tokenizer = new HmacDigitTokenizer(key(), dictionary);
+        for (int i = 0; i < 100; i++) {
+            String digits = String.format("%016d", i * 7919L);
+            char[] computed = digits.toCharArray();
+            char[] cached = digits.toCharArray();
+            tokenizer.tokenize(computed, 16);
+            tokenizer.tokenize(cached, 16);
+            assertEquals(new String(computed), new String(cached));
+        }
+    }
+    
+    public void testSameCardGivesTheSameTokenWhateverSurroundsIt() throws UnsupportedEncodingException {
+        String token = token("paid with " + CARD + " ok");
+        assertEquals(token, token("order 82 " + CARD));
+        assertEquals(token, token("qty 0 " + CARD + " 7"));
+        assertEquals(token, token("1234-" + CARD + "-5678"));
+    }
+    
+    public void testLeavesTheDigitsAroundTheCardAlone() throws UnsupportedEncodingException {
+        StringBuilder text = new StringBuilder("order 82 " + CARD + " 7");
+        mask(text, new TokenDictionary(1024));
+        assertTrue(text.toString().startsWith("order 82 "));
+        assertTrue(text.toString().endsWith(" 7"));
+    }
+    
+    /**
+     * Tokenizes the card only, like the filter would, and returns its token.
+     */
+    private static String token(String text) throws UnsupportedEncodingException {
+        StringBuilder builder = new StringBuilder(text);
+        int start = mask(builder, new TokenDictionary(1024));
+        return builder.substring(start, start + CARD.length());
+    }
+    
+    private static int mask(StringBuilder text, TokenDictionary dictionary) throws UnsupportedEncodingException {
+        int start = text.indexOf(CARD);
+        new TokenizingMaskingStrategy(new HmacDigitTokenizer(key(), dictionary)).mask(text, start,
+                start + CARD.length());
+        return start;
+    }
+    
+    private static String tokenize(String text, TokenDictionary dictionary) throws UnsupportedEncodingException {
+        StringBuilder builder = new StringBuilder(text);
+        new TokenizingMaskingStrategy(new HmacDigitTokenizer(key(), dictionary)).mask(builder, 0, builder.length());
+        return builder.toString();
+    }
+    
+    private static byte[] key() throws UnsupportedEncodingException {
+        return "secret".getBytes("UTF-8");
+    }
+}
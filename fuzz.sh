@@ -0,0 +1,4 @@
+#!/bin/sh
+
+# Compares the output of another filter command against mask.sh on random input.
+java -cp tools/target/luhnybin-1.0-SNAPSHOT.jar com.squareup.luhnybin.Fuzz "$@"
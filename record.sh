@@ -0,0 +1,4 @@
+#!/bin/sh
+
+# Runs mask.sh with the filter events recorded to filter.jfr, see creditcard-filter/src/main/jfr/credit-card-filter.jfc.
+MAVEN_OPTS="$MAVEN_OPTS -Xlog:jfr+startup=error -XX:StartFlightRecording:settings=default,settings=creditcard-filter/src/main/jfr/credit-card-filter.jfc,filename=filter.jfr" sh mask.sh "$@"
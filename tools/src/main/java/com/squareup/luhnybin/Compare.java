@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2011 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the &quot;License&quot;);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an &quot;AS IS&quot; BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.luhnybin;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the test suite, a latency probe and a throughput corpus against the mask.sh of each of the given local
+ * directories, one after the other, and ranks them. Nothing is downloaded.
+ */
+public class Compare {
+
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  private final LuhnyBinTests tests;
+  private final int latencySamples;
+  private final byte[] corpus;
+
+  Compare(int latencySamples, int corpusBytes) {
+    // The very same suite run.sh sends.
+    this.tests = new LuhnyBinTests();
+    this.latencySamples = latencySamples;
+    this.corpus = corpus(corpusBytes, new Random(42));
+  }
+
+  public static void main(String[] args) throws IOException {
+    int latencySamples = 1000;
+    int corpusMegabytes = 16;
+    List<File> directories = new ArrayList<File>();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        if (args[i].equals("--samples")) {
+          latencySamples = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("--corpus-mb")) {
+          corpusMegabytes = Integer.parseInt(args[++i]);
+        } else {
+          directories.add(new File(args[i]));
+        }
+      }
+      if (directories.isEmpty() || latencySamples < 1 || corpusMegabytes < 1) {
+        throw new IllegalArgumentException();
+      }
+    } catch (RuntimeException e) {
+      System.err.println("Usage: ./compare.sh [--samples n] [--corpus-mb n] directory...");
+      System.err.println("Each directory must contain a mask.sh.");
+      System.exit(1);
+    }
+    for (File directory : directories) {
+      if (!new File(directory, "mask.sh").exists()) {
+        System.err.println("Couldn't find 'mask.sh' in " + directory + ".");
+        System.exit(1);
+      }
+    }
+
+    Compare compare = new Compare(latencySamples, corpusMegabytes << 20);
+    List<Result> results = new ArrayList<Result>();
+    for (File directory : directories) {
+      System.out.println("Measuring " + directory + "...");
+      results.add(compare.measure(directory));
+    }
+    System.out.println();
+    print(rank(results));
+  }
+
+  /**
+   * The suite runs in a process of its own which gets its input closed afterwards, so a filter answering with the
+   * wrong amount of output can't leave us waiting. Only correct filters get timed, in a second process. A filter
+   * that stays silent as long as Fuzz waits for an answer, one that only writes once its input ends for instance,
+   * didn't answer.
+   */
+  Result measure(File directory) throws IOException {
+    Result result = new Result(directory.getPath());
+    Process process = start(directory);
+    try {
+      TimedInputStream in = new TimedInputStream(process.getInputStream(), Fuzz.STARTUP_TIMEOUT_SECONDS);
+      long start = System.nanoTime();
+      roundTrip(process.getOutputStream(), in, "warm up".getBytes(ASCII));
+      result.startupMillis = (System.nanoTime() - start) / 1000000;
+      in.timeoutSeconds = Fuzz.RESPONSE_TIMEOUT_SECONDS;
+      checkSuite(process.getOutputStream(), in, result);
+    } catch (IOException e) {
+      if (result.startupMillis < 0) result.error = "mask.sh didn't answer";
+      else if (!(e instanceof EOFException)) result.error = e.getMessage();
+      else if (result.firstFailure == null) result.firstFailure = "mask.sh sent less output than expected";
+    } finally {
+      process.destroy();
+    }
+    if (!result.correct()) return result;
+
+    process = start(directory);
+    try {
+      OutputStream out = process.getOutputStream();
+      TimedInputStream in = new TimedInputStream(process.getInputStream(), Fuzz.STARTUP_TIMEOUT_SECONDS);
+      roundTrip(out, in, "warm up".getBytes(ASCII));
+      in.timeoutSeconds = Fuzz.RESPONSE_TIMEOUT_SECONDS;
+      result.latencyMicros = latencies(out, in);
+      result.megabytesPerSecond = throughput(out, in);
+    } catch (IOException e) {
+      result.error = e instanceof EOFException ? "mask.sh stopped answering" : e.getMessage();
+    } finally {
+      process.destroy();
+    }
+    return result;
+  }
+
+  private static Process start(File directory) throws IOException {
+    final Process process = new ProcessBuilder("sh", "mask.sh").directory(directory).start();
+    daemon(new Runnable() {
+      public void run() {
+        try {
+          ByteStreams.copy(process.getErrorStream(), System.err);
+        } catch (IOException e) { /* ignore */ }
+      }
+    });
+    return process;
+  }
+
+  private void checkSuite(final OutputStream out, InputStream in, final Result result) throws IOException {
+    result.tests = tests.count;
+    final ByteArrayOutputStream suite = new ByteArrayOutputStream();
+    tests.writeTo(suite);
+    // Written in the background, writing can block until we read.
+    daemon(new Runnable() {
+      public void run() {
+        try {
+          suite.writeTo(out);
+          out.close();
+        } catch (IOException e) { /* reading will fail too */ }
+      }
+    });
+    tests.check(in, new TestCase.Listener() {
+      public void testPassed(TestCase test) {
+        result.testsPassed++;
+      }
+
+      public void testFailed(TestCase test, String actualInput) {
+        if (result.firstFailure == null) result.firstFailure = test.description;
+      }
+    });
+  }
+
+  /** Sends one line at a time and times how long its masked version takes to come back, in microseconds. */
+  private long[] latencies(OutputStream out, InputStream in) throws IOException {
+    Random random = new Random(7);
+    long[] latencies = new long[latencySamples];
+    for (int i = 0; i < latencySamples; i++) {
+      byte[] line = logLine(random).getBytes(ASCII);
+      long start = System.nanoTime();
+      roundTrip(out, in, Arrays.copyOf(line, line.length - 1));
+      latencies[i] = (System.nanoTime() - start) / 1000;
+    }
+    Arrays.sort(latencies);
+    return latencies;
+  }
+
+  /** Streams the corpus through as fast as the filter takes it, until it closes its output. */
+  private double throughput(final OutputStream out, InputStream in) throws IOException {
+    long start = System.nanoTime();
+    daemon(new Runnable() {
+      public void run() {
+        try {
+          out.write(corpus);
+          out.close();
+        } catch (IOException e) { /* reading will fail too */ }
+      }
+    });
+    byte[] buffer = new byte[65536];
+    long received = 0;
+    int read;
+    while ((read = in.read(buffer)) != -1) received += read;
+    long elapsed = System.nanoTime() - start;
+    if (received != corpus.length) {
+      throw new IOException("mask.sh sent " + received + " bytes back for " + corpus.length);
+    }
+    return corpus.length / (1024.0 * 1024.0) / (elapsed / 1e9);
+  }
+
+  private static void roundTrip(OutputStream out, InputStream in, byte[] line) throws IOException {
+    out.write(line);
+    out.write('\n');
+    out.flush();
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b == -1) throw new EOFException();
+    }
+  }
+
+  /** Log lines with a card now and then, some grouped, some among other digits. */
+  static byte[] corpus(int size, Random random) {
+    ByteArrayOutputStream corpus = new ByteArrayOutputStream(size + 256);
+    while (corpus.size() < size) {
+      byte[] line = logLine(random).getBytes(ASCII);
+      corpus.write(line, 0, line.length);
+    }
+    return corpus.toByteArray();
+  }
+
+  private static String logLine(Random random) {
+    StringBuilder line = new StringBuilder("2011-11-21 12:")
+        .append(10 + random.nextInt(50)).append(':').append(10 + random.nextInt(50))
+        .append(" INFO  [request-").append(random.nextInt(100000)).append("] ");
+    switch (random.nextInt(8)) {
+      case 0:
+        line.append("charging card ").append(LuhnyBinTests.randomNumber(random, 14 + random.nextInt(3)));
+        break;
+      case 1:
+        line.append("card ")
+            .append(LuhnyBinTests.formatNumber(LuhnyBinTests.randomNumber(random, 16),
+                random.nextBoolean() ? ' ' : '-'))
+            .append(" declined");
+        break;
+      case 2:
+        line.append("order ").append(LuhnyBinTests.nonMatchingSequence(random, 16)).append(" shipped");
+        break;
+      default:
+        line.append("served /payments/").append(random.nextInt(1000000)).append(" in ")
+            .append(random.nextInt(300)).append("ms");
+    }
+    return line.append('\n').toString();
+  }
+
+  /** Correct filters first, then by throughput. */
+  static List<Result> rank(List<Result> results) {
+    List<Result> ranked = new ArrayList<Result>(results);
+    Collections.sort(ranked, new Comparator<Result>() {
+      public int compare(Result a, Result b) {
+        if (a.correct() != b.correct()) return a.correct() ? -1 : 1;
+        if (a.testsPassed != b.testsPassed) return b.testsPassed - a.testsPassed;
+        return Double.compare(b.megabytesPerSecond, a.megabytesPerSecond);
+      }
+    });
+    return ranked;
+  }
+
+  private static void print(List<Result> ranked) {
+    int width = "Filter".length();
+    for (Result result : ranked) width = Math.max(width, result.name.length());
+    String row = "%-4s  %-" + width + "s  %7s  %10s  %8s  %9s  %9s  %9s%n";
+    System.out.printf(row, "Rank", "Filter", "Tests", "Startup", "MB/s", "p50", "p90", "p99");
+    for (int i = 0; i < ranked.size(); i++) {
+      Result result = ranked.get(i);
+      boolean measured = result.latencyMicros != null;
+      System.out.printf(row, i + 1, result.name, result.testsPassed + "/" + result.tests,
+          result.startupMillis < 0 ? "-" : String.format("%,dms", result.startupMillis),
+          measured && result.error == null ? String.format("%.1f", result.megabytesPerSecond) : "-",
+          measured ? percentile(result.latencyMicros, 50) : "-",
+          measured ? percentile(result.latencyMicros, 90) : "-",
+          measured ? percentile(result.latencyMicros, 99) : "-");
+    }
+    System.out.println();
+    for (Result result : ranked) {
+      if (result.error != null) {
+        System.out.println(result.name + ": " + result.error);
+      } else if (result.firstFailure != null) {
+        System.out.println(result.name + ": failed \"" + result.firstFailure + "\" first");
+      }
+    }
+  }
+
+  static String percentile(long[] sorted, int percent) {
+    int index = Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100.0) - 1);
+    return String.format("%,dus", sorted[Math.max(0, index)]);
+  }
+
+  private static void daemon(Runnable runnable) {
+    Thread thread = new Thread(runnable);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Reads the output of a filter on a thread of its own, so that waiting for it times out.
+   */
+  static class TimedInputStream extends InputStream {
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<byte[]>();
+    private byte[] chunk = new byte[0];
+    private int position;
+    long timeoutSeconds;
+
+    TimedInputStream(final InputStream in, long timeoutSeconds) {
+      this.timeoutSeconds = timeoutSeconds;
+      daemon(new Runnable() {
+        public void run() {
+          try {
+            byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) != -1) chunks.add(Arrays.copyOf(buffer, read));
+          } catch (IOException e) { /* same as the end of the output */ }
+          chunks.add(END);
+        }
+      });
+    }
+
+    @Override
+    public int read() throws IOException {
+      return available() > 0 || next() ? chunk[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) return 0;
+      if (available() == 0 && !next()) return -1;
+      int read = Math.min(len, available());
+      System.arraycopy(chunk, position, b, off, read);
+      position += read;
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return chunk.length - position;
+    }
+
+    /** Waits for the next chunk, returns false at the end of the output. */
+    private boolean next() throws IOException {
+      if (chunk == END) return false;
+      byte[] next;
+      try {
+        next = chunks.poll(timeoutSeconds, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      if (next == null) throw new InterruptedIOException("mask.sh didn't answer within " + timeoutSeconds + "s");
+      chunk = next;
+      position = 0;
+      return chunk != END;
+    }
+  }
+
+  static class Result {
+
+    final String name;
+    long startupMillis = -1;
+    int tests;
+    int testsPassed;
+    String firstFailure;
+    long[] latencyMicros;
+    double megabytesPerSecond;
+    String error;
+
+    Result(String name) {
+      this.name = name;
+    }
+
+    boolean correct() {
+      return error == null && tests > 0 && testsPassed == tests;
+    }
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2011 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the &quot;License&quot;);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an &quot;AS IS&quot; BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.luhnybin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Differential fuzzing: feeds random and adversarial lines to a reference filter and to a candidate filter, one line
+ * at a time, and reports the first line on which their outputs differ, minimized. Both filters must flush after each
+ * line. Lines are plain ASCII unless <code>--multi-byte</code> is given, which also sends UTF-8 encoded characters
+ * and only makes sense when both filters read and write UTF-8, whatever the platform charset.
+ */
+public class Fuzz {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final String DEFAULT_ORACLE = "sh mask.sh -Dfilter.flush=line";
+
+  /** Generous, the first line has to wait for mask.sh to compile the filter. */
+  static final long STARTUP_TIMEOUT_SECONDS = 300;
+  static final long RESPONSE_TIMEOUT_SECONDS = 30;
+
+  private static final String[] MULTI_BYTE = { "\u00e9", "\u20ac", "\u65e5\u672c", "\ud83d\udcb3" };
+  private static final String[] DELIMITERS = { " ", "-", "\t", "  ", "--", " -" };
+
+  private final Random random;
+  private final boolean multiByte;
+
+  Fuzz(long seed, boolean multiByte) {
+    this.random = new Random(seed);
+    this.multiByte = multiByte;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int cases = 10000;
+    long seed = System.currentTimeMillis();
+    boolean multiByte = false;
+    String oracleCommand = DEFAULT_ORACLE;
+    String candidateCommand = null;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        if (args[i].equals("--cases")) {
+          cases = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("--seed")) {
+          seed = Long.parseLong(args[++i]);
+        } else if (args[i].equals("--ascii")) {
+          multiByte = false;
+        } else if (args[i].equals("--multi-byte")) {
+          multiByte = true;
+        } else if (args[i].equals("--oracle")) {
+          oracleCommand = args[++i];
+        } else if (candidateCommand == null) {
+          candidateCommand = args[i];
+        } else {
+          throw new IllegalArgumentException(args[i]);
+        }
+      }
+      if (candidateCommand == null) throw new IllegalArgumentException();
+    } catch (RuntimeException e) {
+      System.err.println("Usage: ./fuzz.sh [--cases n] [--seed s] [--multi-byte] [--oracle command] candidate-command");
+      System.err.println("Example: ./fuzz.sh \"sh mask.sh -Dfilter.engine=streaming\"");
+      System.exit(1);
+    }
+
+    System.out.println("Fuzzing '" + candidateCommand + "' against '" + oracleCommand + "' (seed " + seed + ")...");
+    System.out.println();
+
+    // Started one after the other, both may need to build the filter in the same directory.
+    Filter oracle = new Filter(oracleCommand);
+    Filter candidate = new Filter(candidateCommand);
+    try {
+      System.exit(new Fuzz(seed, multiByte).run(oracle, candidate, cases) ? 0 : 1);
+    } catch (EOFException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    } finally {
+      oracle.destroy();
+      candidate.destroy();
+    }
+  }
+
+  boolean run(Filter oracle, Filter candidate, int cases) throws IOException {
+    long start = System.nanoTime();
+    for (int i = 1; i <= cases; i++) {
+      byte[] input = generateLine().getBytes(UTF_8);
+      if (!Arrays.equals(oracle.filter(input), candidate.filter(input))) {
+        byte[] minimized = minimize(oracle, candidate, input);
+        System.out.println();
+        System.err.println("Case #" + i + " diverged:"
+            + "\n  Input:            " + show(input)
+            + "\n  Minimized input:  " + show(minimized)
+            + "\n  Oracle result:    " + show(oracle.filter(minimized))
+            + "\n  Candidate result: " + show(candidate.filter(minimized))
+            + "\n");
+        return false;
+      }
+      if (i % 100 == 0) System.out.print('.');
+      if (i % 8000 == 0) System.out.println();
+    }
+    System.out.println();
+    System.out.printf("%,d cases agreed in %,dms.%n", cases, (System.nanoTime() - start) / 1000000);
+    return true;
+  }
+
+  /** Builds a line out of fragments meant to trip up card detection where they meet. */
+  String generateLine() {
+    StringBuilder line = new StringBuilder();
+    for (int fragments = 1 + random.nextInt(8); fragments > 0; fragments--) {
+      switch (random.nextInt(multiByte ? 11 : 10)) {
+        case 0:
+          line.append(LuhnyBinTests.randomNumber(random, 14 + random.nextInt(3)));
+          break;
+        case 1:
+          line.append(LuhnyBinTests.nestedNumber(random));
+          break;
+        case 2:
+          line.append(LuhnyBinTests.formatNumber(LuhnyBinTests.randomNumber(random, 16), randomDelimiter()));
+          break;
+        case 3:
+          line.append(mixedDelimiters(LuhnyBinTests.randomNumber(random, 16)));
+          break;
+        case 4:
+          line.append(overlappingNumbers(17 + random.nextInt(30)));
+          break;
+        case 5:
+          line.append(LuhnyBinTests.nonMatchingSequence(random, 1 + random.nextInt(40)));
+          break;
+        case 6:
+          line.append(randomDigits(1 + random.nextInt(20)));
+          break;
+        case 7:
+          line.append(DELIMITERS[random.nextInt(DELIMITERS.length)]);
+          break;
+        case 8:
+          line.append(LuhnyBinTests.randomNumber(random, 13 + random.nextInt(5)));
+          break;
+        case 9:
+          line.append((char) (random.nextInt(68) + ':'));
+          break;
+        default:
+          line.append(MULTI_BYTE[random.nextInt(MULTI_BYTE.length)]);
+      }
+    }
+    return line.toString();
+  }
+
+  private char randomDelimiter() {
+    return random.nextBoolean() ? ' ' : '-';
+  }
+
+  /** Groups a 16-digit number by 4, with a different delimiter between each group. */
+  private String mixedDelimiters(String number) {
+    StringBuilder formatted = new StringBuilder();
+    for (int i = 0; i < 4; i++) {
+      formatted.append(number, i * 4, i * 4 + 4);
+      if (i < 3) formatted.append(" -\t".charAt(random.nextInt(3)));
+    }
+    return formatted.toString();
+  }
+
+  /** A sequence where every window of 16 digits passes the Luhn check. */
+  private String overlappingNumbers(int length) {
+    StringBuilder output = new StringBuilder(LuhnyBinTests.randomNumber(random, 16));
+    for (int i = 0; output.length() < length; i++) {
+      output.append(LuhnyBinTests.computeLast(output.subSequence(i + 1, i + 16)));
+    }
+    return output.toString();
+  }
+
+  private String randomDigits(int length) {
+    StringBuilder digits = new StringBuilder();
+    for (int i = 0; i < length; i++) digits.append((char) ('0' + random.nextInt(10)));
+    return digits.toString();
+  }
+
+  /** Removes ever smaller chunks of the input as long as the filters still disagree on what remains. */
+  static byte[] minimize(Filter oracle, Filter candidate, byte[] input) throws IOException {
+    byte[] current = input;
+    int chunk = Math.max(1, current.length / 2);
+    while (true) {
+      boolean removed = false;
+      for (int start = 0; start + chunk <= current.length && current.length > chunk; ) {
+        byte[] reduced = new byte[current.length - chunk];
+        System.arraycopy(current, 0, reduced, 0, start);
+        System.arraycopy(current, start + chunk, reduced, start, reduced.length - start);
+        if (!Arrays.equals(oracle.filter(reduced), candidate.filter(reduced))) {
+          current = reduced;
+          removed = true;
+        } else {
+          start += chunk;
+        }
+      }
+      if (removed) continue;
+      if (chunk == 1) return current;
+      chunk /= 2;
+    }
+  }
+
+  /** Shows the exact bytes, some filters mangle multi-byte characters. */
+  static String show(byte[] line) {
+    StringBuilder shown = new StringBuilder();
+    for (byte b : line) {
+      if (b == '\t') {
+        shown.append("\\t");
+      } else if (b < ' ' || b > '~') {
+        shown.append(String.format("\\x%02x", b & 0xFF));
+      } else {
+        shown.append((char) b);
+      }
+    }
+    return shown.toString();
+  }
+
+  /** A filter process answering each line it gets with one line. */
+  static class Filter {
+
+    private final String command;
+    private final Process process;
+    private final OutputStream in;
+    private final BlockingQueue<byte[]> lines = new LinkedBlockingQueue<byte[]>();
+    private boolean started;
+
+    Filter(String command) throws IOException {
+      this.command = command;
+      this.process = new ProcessBuilder("sh", "-c", command).start();
+      this.in = process.getOutputStream();
+      daemon(new Runnable() {
+        public void run() {
+          readLines(process.getInputStream());
+        }
+      });
+      daemon(new Runnable() {
+        public void run() {
+          copy(process.getErrorStream(), System.err);
+        }
+      });
+      filter("warm up".getBytes(UTF_8));
+    }
+
+    byte[] filter(byte[] line) throws IOException {
+      in.write(line);
+      in.write('\n');
+      in.flush();
+      byte[] result;
+      try {
+        result = lines.poll(started ? RESPONSE_TIMEOUT_SECONDS : STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (result == null) throw new EOFException("'" + command + "' didn't answer " + show(line));
+      started = true;
+      return result;
+    }
+
+    void destroy() {
+      process.destroy();
+    }
+
+    private void readLines(InputStream out) {
+      try {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = out.read()) != -1) {
+          if (b == '\n') {
+            lines.add(line.toByteArray());
+            line.reset();
+          } else {
+            line.write(b);
+          }
+        }
+      } catch (IOException e) { /* the process is gone, the next poll will time out */ }
+    }
+
+    private static void copy(InputStream from, OutputStream to) {
+      try {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = from.read(buffer)) != -1) to.write(buffer, 0, read);
+      } catch (IOException e) { /* ignore */ }
+    }
+
+    private static void daemon(Runnable runnable) {
+      Thread thread = new Thread(runnable);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+}
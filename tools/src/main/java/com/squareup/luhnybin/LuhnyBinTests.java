@@ -31,29 +31,37 @@ public class LuhnyBinTests extends TestSuite {
   private static final int MIN_LENGTH = 14;
   private static final int MAX_LENGTH = 16;
 
-  private static final Random random = new Random(0xDEADBEEF);
+  private static final long SEED = 0xDEADBEEF;
+
+  private final Random random;
 
   LuhnyBinTests() {
+    this(new Random(SEED));
+  }
+
+  /** Draws the random numbers of the suite from the given generator, so the same seed gives the same suite. */
+  LuhnyBinTests(Random random) {
+    this.random = random;
     test("line feed preservation").sendAndExpect("LF only ->\n<- LF only");
 
     for (int i = MIN_LENGTH; i <= MAX_LENGTH; i++) {
       test("valid " + i + "-digit #")
-          .send(randomNumber(i))
+          .send(randomNumber(random, i))
           .expect(mask(i));
     }
 
     for (int i = MIN_LENGTH; i <= MAX_LENGTH; i++) {
-      test("non-matching " + i + "-digit #").sendAndExpect(nonMatchingSequence(i));
+      test("non-matching " + i + "-digit #").sendAndExpect(nonMatchingSequence(random, i));
     }
 
-    test("not enough digits").sendAndExpect(nonMatchingSequence(MIN_LENGTH - 1));
+    test("not enough digits").sendAndExpect(nonMatchingSequence(random, MIN_LENGTH - 1));
 
-    String tooMany = nonMatchingSequence(MAX_LENGTH);
+    String tooMany = nonMatchingSequence(random, MAX_LENGTH);
     tooMany += computeLast(tooMany);
     test("too many digits").sendAndExpect(tooMany);
 
     test("14-digit # prefixed with 0s")
-        .send("00" + randomNumber(14))
+        .send("00" + randomNumber(random, 14))
         .expect(mask(16));
 
     test("2 non-matching digits followed by a 14-digit #")
@@ -61,7 +69,7 @@ public class LuhnyBinTests extends TestSuite {
         .expect("12XXXXXXXXXXXXXX");
 
     test("14-digit # embedded in a 16-digit #")
-        .send(nestedNumber())
+        .send(nestedNumber(random))
         .expect(mask(16));
 
     test("16-digit # flanked by non-matching digits")
@@ -87,7 +95,7 @@ public class LuhnyBinTests extends TestSuite {
 
     testOverlappingMatches();
 
-    test("long sequence of digits with no matches").sendAndExpect(nonMatchingSequence(1000));
+    test("long sequence of digits with no matches").sendAndExpect(nonMatchingSequence(random, 1000));
   }
 
   private String nonDigits() {
@@ -102,8 +110,8 @@ public class LuhnyBinTests extends TestSuite {
         .expect(formattedMask(delimeter));
   }
 
-  private static String formattedNumber(char delimeter) {
-    return formatNumber(randomNumber(16), delimeter);
+  private String formattedNumber(char delimeter) {
+    return formatNumber(randomNumber(random, 16), delimeter);
   }
 
   static String formatNumber(String number, char delimeter) {
@@ -126,7 +134,7 @@ public class LuhnyBinTests extends TestSuite {
   }
 
   /** Generates a sequence of digits with the specified length and no card #s. */
-  private String nonMatchingSequence(int length) {
+  static String nonMatchingSequence(Random random, int length) {
     StringBuilder builder = new StringBuilder();
     DigitSet excluded = new DigitSet();
     for (int lastIndex = 0; lastIndex < length; lastIndex++) {
@@ -142,7 +150,7 @@ public class LuhnyBinTests extends TestSuite {
       // Find a digit that doesn't result in a valid card #.
       char digit;
       do {
-        digit = randomDigit();
+        digit = randomDigit(random);
       } while (excluded.contains(digit));
       builder.append(digit);
     }
@@ -151,7 +159,7 @@ public class LuhnyBinTests extends TestSuite {
   }
 
   private void testOverlappingMatches() {
-    StringBuilder output = new StringBuilder(randomNumber(MAX_LENGTH));
+    StringBuilder output = new StringBuilder(randomNumber(random, MAX_LENGTH));
     for (int i = 0; i < 1000 - MAX_LENGTH; i++) {
       output.append(computeLast(output.subSequence(i + 1, i + MAX_LENGTH)));
     }
@@ -162,20 +170,20 @@ public class LuhnyBinTests extends TestSuite {
   }
 
   /** Creates a 16-digit card # with a 14-digit number embedded inside. */
-  private static String nestedNumber() {
+  static String nestedNumber(Random random) {
     StringBuilder number = new StringBuilder(16);
     number.setLength(16);
-    setRandomDigits(number, 0, 14);
+    setRandomDigits(random, number, 0, 14);
     number.setCharAt(14, computeLast(number.subSequence(1, 14)));
     number.setCharAt(15, computeLast(number.subSequence(0, 15)));
     return number.toString();
   }
 
   /** Computes a random, valid card # with the specified number of digits. */
-  private static String randomNumber(int digits) {
+  static String randomNumber(Random random, int digits) {
     StringBuilder number = new StringBuilder(digits);
     number.setLength(digits);
-    setRandomDigits(number, 0, digits - 1);
+    setRandomDigits(random, number, 0, digits - 1);
     number.setCharAt(digits - 1, computeLast(number.subSequence(0, digits - 1)));
     return number.toString();
   }
@@ -192,12 +200,12 @@ public class LuhnyBinTests extends TestSuite {
     return new String(mask);
   }
 
-  private static void setRandomDigits(StringBuilder builder, int start, int end) {
-    for (int i = start; i < end; i++) builder.setCharAt(i, randomDigit());
+  private static void setRandomDigits(Random random, StringBuilder builder, int start, int end) {
+    for (int i = start; i < end; i++) builder.setCharAt(i, randomDigit(random));
   }
 
   /** Generates a random digit. */
-  private static char randomDigit() {
+  private static char randomDigit(Random random) {
     return (char) ('0' + random.nextInt(10));
   }
 
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2011 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the &quot;License&quot;);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an &quot;AS IS&quot; BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.luhnybin;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompareTest {
+
+  @Test public void ranksCorrectFiltersFirstThenByThroughput() {
+    Compare.Result slow = result("slow", 22, 1.0);
+    Compare.Result fast = result("fast", 22, 8.0);
+    Compare.Result wrong = result("wrong", 21, 50.0);
+    List<Compare.Result> ranked = Compare.rank(Arrays.asList(wrong, slow, fast));
+    Assert.assertEquals(Arrays.asList(fast, slow, wrong), ranked);
+  }
+
+  @Test public void percentiles() {
+    long[] sorted = new long[100];
+    for (int i = 0; i < sorted.length; i++) sorted[i] = i + 1;
+    Assert.assertEquals("50us", Compare.percentile(sorted, 50));
+    Assert.assertEquals("99us", Compare.percentile(sorted, 99));
+    Assert.assertEquals("7us", Compare.percentile(new long[] { 7 }, 90));
+  }
+
+  private static Compare.Result result(String name, int testsPassed, double megabytesPerSecond) {
+    Compare.Result result = new Compare.Result(name);
+    result.tests = 22;
+    result.testsPassed = testsPassed;
+    result.megabytesPerSecond = megabytesPerSecond;
+    return result;
+  }
+}